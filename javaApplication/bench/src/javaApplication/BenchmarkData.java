@@ -0,0 +1,60 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Deterministic transactions for the benchmarks: about 5% invalid item codes, 5% wrong checksums,
+//10% zero profit and 10% losses, like the files pos.py generates
+final class BenchmarkData {
+
+    static final long SEED = 20240101L;
+
+    private BenchmarkData() {
+    }
+
+    static List<TransactionRecord> records(int rows) {
+        Random random = new Random(SEED);
+        List<TransactionRecord> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String billNumber = "20240101_" + (i / 4);
+            String itemCode = random.nextInt(20) == 0 ? "ITEM@" + random.nextInt(1000) : "ITEM" + random.nextInt(1000);
+            BigDecimal internalPrice = BigDecimal.valueOf(100 + random.nextInt(99_900), 2);
+            BigDecimal discount = BigDecimal.valueOf(random.nextInt(1_000), 2);
+            int kind = random.nextInt(10);
+            BigDecimal salePrice;
+            if (kind == 0) {
+                // zero profit
+                salePrice = internalPrice.add(discount);
+            } else if (kind == 1) {
+                salePrice = internalPrice.subtract(BigDecimal.valueOf(random.nextInt(100), 2)).max(BigDecimal.ZERO);
+            } else {
+                salePrice = internalPrice.add(discount).add(BigDecimal.valueOf(1 + random.nextInt(10_000), 2));
+            }
+            int quantity = 1 + random.nextInt(10);
+            BigDecimal lineTotal = salePrice.subtract(discount).multiply(BigDecimal.valueOf(quantity));
+
+            TransactionRecord record = new TransactionRecord(billNumber, itemCode, internalPrice, discount,
+                    salePrice, quantity, lineTotal, 0);
+            int checksum = TransactionValidator.calculateChecksum(record);
+            record.setOriginalChecksum(random.nextInt(20) == 0 ? checksum + 1 : checksum);
+            record.setValid(TransactionValidator.validateTransaction(record, checksum));
+            records.add(record);
+        }
+        return records;
+    }
+
+    //Generated tax file in pos.py's format with the same mix, deleted by the caller
+    static Path csvFile(int rows) throws IOException {
+        Path file = Files.createTempFile("transactions-" + rows + "-", ".csv");
+        TaxFileGenerator generator = new TaxFileGenerator(SEED);
+        generator.setRowCount(rows);
+        generator.setInvalidRatio(0.1);
+        generator.generate(file.toString());
+        return file;
+    }
+}
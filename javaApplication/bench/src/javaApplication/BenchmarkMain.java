@@ -0,0 +1,30 @@
+package javaApplication;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+//Runs the benchmarks with the gc profiler (allocation rate per operation next to the times, and the
+//SampleTime modes give the latency percentiles) and writes the results to jmh-result.json,
+//keep that file from each run to compare them.
+//
+//  java -cp benchmarks.jar javaApplication.BenchmarkMain [regex] [rows...]
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "javaApplication\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json");
+        if (args.length > 1) {
+            options.param("rows", Arrays.copyOfRange(args, 1, args.length));
+        }
+        new Runner(options.build()).run();
+    }
+}
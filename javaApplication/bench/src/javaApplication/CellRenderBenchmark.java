@@ -0,0 +1,200 @@
+package javaApplication;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.util.converter.BigDecimalStringConverter;
+import javafx.util.converter.IntegerStringConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Scrolling the transaction table by a page, time per page of visible rows. The cells are the table's
+//own, made by the columns' cell factories and moved to the next rows with updateIndex, which reads the
+//cell value factory and calls the cell's updateItem. Layout and painting are not included.
+//columns=property is the table before TransactionColumns (PropertyValueFactory and the default cells for the
+//read only columns), columns=direct the one JavaFXMain builds now.
+//Needs the JavaFX toolkit, so a display: headless its setup fails and the other benchmarks go on.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellRenderBenchmark {
+
+    private static final int VISIBLE_ROWS = 40;
+    private static final String VALID_STYLE = "-fx-text-fill: #1DB954; -fx-font-weight: bold;";
+    private static final String INVALID_STYLE = "-fx-text-fill: #123458; -fx-font-weight: bold;";
+
+    @Param({"500000"})
+    public int rows;
+
+    @Param({"property", "direct"})
+    public String columns;
+
+    private final List<TableRow<TransactionRecord>> visibleRows = new ArrayList<>();
+    private final List<List<TableCell<TransactionRecord, ?>>> visibleCells = new ArrayList<>();
+    private int top;
+
+    @Setup(Level.Trial)
+    public void createTable() {
+        try {
+            Platform.startup(() -> {
+            });
+        } catch (IllegalStateException e) {
+            // already started
+        }
+
+        TableView<TransactionRecord> table = new TableView<>(FXCollections.observableList(BenchmarkData.records(rows)));
+        if (columns.equals("direct")) {
+            addDirectColumns(table);
+        } else {
+            addPropertyColumns(table);
+        }
+
+        for (int i = 0; i < VISIBLE_ROWS; i++) {
+            TableRow<TransactionRecord> row = new TableRow<>();
+            row.updateTableView(table);
+            List<TableCell<TransactionRecord, ?>> cells = new ArrayList<>();
+            for (TableColumn<TransactionRecord, ?> column : table.getColumns()) {
+                cells.add(createCell(table, row, column));
+            }
+            visibleRows.add(row);
+            visibleCells.add(cells);
+        }
+    }
+
+    @Benchmark
+    public void scroll(Blackhole blackhole) {
+        top += VISIBLE_ROWS;
+        if (top + VISIBLE_ROWS > rows) {
+            top = 0;
+        }
+        for (int i = 0; i < VISIBLE_ROWS; i++) {
+            visibleRows.get(i).updateIndex(top + i);
+            for (TableCell<TransactionRecord, ?> cell : visibleCells.get(i)) {
+                cell.updateIndex(top + i);
+                blackhole.consume(cell.getText());
+                blackhole.consume(cell.getStyle());
+            }
+        }
+    }
+
+    private static <T> TableCell<TransactionRecord, T> createCell(TableView<TransactionRecord> table,
+            TableRow<TransactionRecord> row, TableColumn<TransactionRecord, T> column) {
+        TableCell<TransactionRecord, T> cell = column.getCellFactory().call(column);
+        cell.updateTableView(table);
+        cell.updateTableColumn(column);
+        cell.updateTableRow(row);
+        return cell;
+    }
+
+    // as JavaFXMain.createTransactionTable
+    private static void addDirectColumns(TableView<TransactionRecord> table) {
+        TableColumn<TransactionRecord, String> billNumberCol = new TableColumn<>("Bill Number");
+        billNumberCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getBillNumber));
+        billNumberCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        TableColumn<TransactionRecord, String> itemCodeCol = new TableColumn<>("Item Code");
+        itemCodeCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getItemCode));
+        itemCodeCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        TableColumn<TransactionRecord, BigDecimal> internalPriceCol = new TableColumn<>("Internal Price");
+        internalPriceCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getInternalPrice));
+        internalPriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> discountCol = new TableColumn<>("Discount");
+        discountCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getDiscount));
+        discountCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> salePriceCol = new TableColumn<>("Sale Price");
+        salePriceCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getSalePrice));
+        salePriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, Integer> quantityCol = new TableColumn<>("Quantity");
+        quantityCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getQuantity));
+        quantityCol.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> lineTotalCol = new TableColumn<>("Total Value");
+        lineTotalCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getLineTotal));
+        lineTotalCol.setCellFactory(TransactionColumns.textCell());
+        TableColumn<TransactionRecord, Integer> checksumCol = new TableColumn<>("Checksum");
+        checksumCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getOriginalChecksum));
+        checksumCol.setCellFactory(TransactionColumns.textCell());
+        TableColumn<TransactionRecord, BigDecimal> profitCol = new TableColumn<>("Profit");
+        profitCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getProfit));
+        profitCol.setCellFactory(TransactionColumns.textCell());
+        TableColumn<TransactionRecord, Boolean> statusCol = new TableColumn<>("Status");
+        statusCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::isValid));
+        statusCol.setCellFactory(TransactionColumns.statusCell(VALID_STYLE, INVALID_STYLE));
+
+        table.getColumns().addAll(List.of(billNumberCol, itemCodeCol, internalPriceCol, discountCol, salePriceCol,
+                quantityCol, lineTotalCol, checksumCol, profitCol, statusCol));
+    }
+
+    // as JavaFXMain.createTransactionTable was before TransactionColumns
+    private static void addPropertyColumns(TableView<TransactionRecord> table) {
+        TableColumn<TransactionRecord, String> billNumberCol = new TableColumn<>("Bill Number");
+        billNumberCol.setCellValueFactory(new PropertyValueFactory<>("billNumber"));
+        billNumberCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        TableColumn<TransactionRecord, String> itemCodeCol = new TableColumn<>("Item Code");
+        itemCodeCol.setCellValueFactory(new PropertyValueFactory<>("itemCode"));
+        itemCodeCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        TableColumn<TransactionRecord, BigDecimal> internalPriceCol = new TableColumn<>("Internal Price");
+        internalPriceCol.setCellValueFactory(new PropertyValueFactory<>("internalPrice"));
+        internalPriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> discountCol = new TableColumn<>("Discount");
+        discountCol.setCellValueFactory(new PropertyValueFactory<>("discount"));
+        discountCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> salePriceCol = new TableColumn<>("Sale Price");
+        salePriceCol.setCellValueFactory(new PropertyValueFactory<>("salePrice"));
+        salePriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
+        TableColumn<TransactionRecord, Integer> quantityCol = new TableColumn<>("Quantity");
+        quantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        quantityCol.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
+        TableColumn<TransactionRecord, BigDecimal> lineTotalCol = new TableColumn<>("Total Value");
+        lineTotalCol.setCellValueFactory(new PropertyValueFactory<>("lineTotal"));
+        TableColumn<TransactionRecord, Integer> checksumCol = new TableColumn<>("Checksum");
+        checksumCol.setCellValueFactory(new PropertyValueFactory<>("originalChecksum"));
+        TableColumn<TransactionRecord, BigDecimal> profitCol = new TableColumn<>("Profit");
+        profitCol.setCellValueFactory(new PropertyValueFactory<>("profit"));
+        TableColumn<TransactionRecord, Boolean> statusCol = new TableColumn<>("Status");
+        statusCol.setCellValueFactory(new PropertyValueFactory<>("valid"));
+        statusCol.setCellFactory(column -> new TableCell<>() {
+            @Override
+            protected void updateItem(Boolean valid, boolean empty) {
+                super.updateItem(valid, empty);
+                if (empty) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    if (valid) {
+                        setText("Valid");
+                        setStyle(VALID_STYLE);
+                    } else {
+                        setText("Invalid");
+                        setStyle(INVALID_STYLE);
+                    }
+                }
+            }
+        });
+
+        table.getColumns().addAll(List.of(billNumberCol, itemCodeCol, internalPriceCol, discountCol, salePriceCol,
+                quantityCol, lineTotalCol, checksumCol, profitCol, statusCol));
+    }
+}
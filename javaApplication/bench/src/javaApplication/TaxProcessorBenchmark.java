@@ -0,0 +1,97 @@
+package javaApplication;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Tax calculation and edits on a loaded processor
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class TaxProcessorBenchmark {
+
+    private static final BigDecimal TAX_RATE = new BigDecimal("12.5");
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private List<TransactionRecord> records;
+    private TaxProcessor processor;
+    // record put in by the next update, the replaced one is reused for the one after
+    private TransactionRecord spare;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        records = BenchmarkData.records(rows);
+        processor = new TaxProcessor();
+        processor.setTaxRate(TAX_RATE);
+        processor.setTransactions(records);
+        TransactionRecord first = records.get(0);
+        spare = new TransactionRecord(first.getBillNumber(), first.getItemCode(), first.getInternalPrice(),
+                first.getDiscount(), first.getSalePrice(), first.getQuantity(), first.getLineTotal(), 0);
+    }
+
+    @Benchmark
+    public BigDecimal calculateFinalTax() {
+        return processor.calculateFinalTax();
+    }
+
+    //full scan of the records, what calculateFinalTax costs without the running totals
+    @Benchmark
+    public BigDecimal calculateFinalTaxScan() {
+        return TaxProcessor.calculateFinalTax(processor.getTransactions().stream(), TAX_RATE);
+    }
+
+    @Benchmark
+    public BigDecimal calculateFinalTaxParallel() {
+        return processor.calculateFinalTaxParallel();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public TransactionRecord updateRecord() {
+        // spread over the whole list, a large prime stride
+        next = (int) ((next + 7_919L) % rows);
+        TransactionRecord replaced = processor.getTransactions().get(next);
+        processor.updateRecord(next, spare);
+        spare = replaced;
+        return replaced;
+    }
+
+    //Each delete gets a processor with every record in it again
+    @State(Scope.Thread)
+    public static class Loaded {
+        TaxProcessor processor = new TaxProcessor();
+
+        @Setup(Level.Invocation)
+        public void reload(TaxProcessorBenchmark benchmark) {
+            processor.setTransactions(benchmark.records);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int deleteZeroProfitRecords(Loaded loaded) {
+        loaded.processor.deleteZeroProfitRecords();
+        return loaded.processor.size();
+    }
+}
@@ -0,0 +1,65 @@
+package javaApplication;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Single calls over a fixed set of records, time per call
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    // power of two, the index wraps with a mask
+    private static final int RECORDS = 1024;
+
+    private TransactionRecord[] records;
+    private String[] lines;
+    private String[] itemCodes;
+    private int next;
+
+    @Setup
+    public void createRecords() {
+        List<TransactionRecord> list = BenchmarkData.records(RECORDS);
+        records = list.toArray(new TransactionRecord[0]);
+        lines = new String[RECORDS];
+        itemCodes = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            lines[i] = records[i].toTransactionLine();
+            itemCodes[i] = records[i].getItemCode();
+        }
+    }
+
+    @Benchmark
+    public int calculateChecksumLine() {
+        return TransactionValidator.calculateChecksum(lines[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public int calculateChecksumRecord() {
+        return TransactionValidator.calculateChecksum(records[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean isValidItemCode() {
+        return TransactionValidator.isValidItemCode(itemCodes[next++ & (RECORDS - 1)]);
+    }
+
+    @Benchmark
+    public boolean validateTransaction() {
+        return TransactionValidator.validateTransaction(records[next++ & (RECORDS - 1)]);
+    }
+}
@@ -0,0 +1,310 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+//Command line entry point for batch runs, without the JavaFX application: imports every file, validates,
+//optionally deletes the zero profit records and calculates the tax, one result line per file and a total.
+//Only uses the non JavaFX classes, so it starts in milliseconds and runs without a display.
+//
+//  java -cp <classes> javaApplication.BatchMain --rate <percent> [options] <file or directory>...
+public class BatchMain {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: BatchMain --rate <percent> [options] <file or directory>...",
+            "Directories are read for their *.csv files.",
+            "  --rate <percent>       tax rate, required",
+            "  --purge-zero-profit    delete zero profit records before the tax calculation",
+            "  --output-dir <dir>     write each file's remaining records to <dir>/<file name>",
+            "  --source-checksums     compare checksums with the file's own lines, like pos.py",
+            "  --format json|csv      json lines (default) or csv",
+            "  --metrics              print the pipeline metrics to stderr at the end");
+
+    // exit codes
+    static final int OK = 0;
+    static final int FILE_FAILED = 1;
+    static final int USAGE_ERROR = 2;
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    //Runs the batch and returns the exit code, results go to out and errors to err
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        List<Path> files;
+        try {
+            options = Options.parse(args);
+            files = listFiles(options.paths);
+        } catch (IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return USAGE_ERROR;
+        }
+        if (options.metrics) {
+            Metrics.setEnabled(true);
+        }
+
+        ResultWriter results = options.csv ? new CsvResults(out) : new JsonResults(out);
+        results.start();
+        Result total = new Result(null);
+        int failed = 0;
+        for (Path file : files) {
+            try {
+                Result result = process(file, options);
+                results.write(result);
+                total.add(result);
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                results.writeError(file.toString(), e.toString());
+            }
+        }
+        total.finalTax = ProfitTotals.calculateFinalTax(total.totalProfit, total.totalLoss, options.taxRate);
+        total.taxRate = options.taxRate;
+        results.write(total);
+        out.flush();
+
+        if (options.metrics) {
+            Metrics.dump(err);
+        }
+        return failed == 0 ? OK : FILE_FAILED;
+    }
+
+    static Result process(Path file, Options options) throws IOException {
+        long start = System.nanoTime();
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSVParallel(file.toString(),
+                ForkJoinPool.commonPool(), TransactionImporter.PARALLEL_CHUNK_SIZE,
+                options.checksumMode));
+        processor.setTaxRate(options.taxRate);
+
+        Result result = new Result(file.toString());
+        result.records = processor.size();
+        result.valid = processor.getValidCount();
+        if (options.purgeZeroProfit) {
+            processor.deleteZeroProfitRecords();
+            result.zeroProfitDeleted = result.records - processor.size();
+            processor.compact();
+        }
+        result.totalProfit = processor.getTotalProfit();
+        result.totalLoss = processor.getTotalLoss();
+        result.taxRate = options.taxRate;
+        result.finalTax = processor.calculateFinalTax();
+        if (options.outputDir != null) {
+            TransactionExporter.exportToCSVAtomically(processor.getTransactions(),
+                    options.outputDir.resolve(file.getFileName()).toString());
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    //The files and the *.csv files of the directories, each directory's files sorted by name
+    static List<Path> listFiles(List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : paths) {
+            Path path = Paths.get(name);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            files.addAll(DirectoryImporter.listTaxFiles(path));
+        }
+        return files;
+    }
+
+    static final class Options {
+        BigDecimal taxRate;
+        boolean purgeZeroProfit;
+        Path outputDir;
+        TransactionValidator.ChecksumMode checksumMode = TransactionValidator.ChecksumMode.RECONSTRUCTED_LINE;
+        boolean csv;
+        boolean metrics;
+        final List<String> paths = new ArrayList<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--rate":
+                        String rate = value(args, ++i, arg);
+                        try {
+                            options.taxRate = new BigDecimal(rate);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid tax rate: " + rate);
+                        }
+                        if (options.taxRate.signum() < 0) {
+                            throw new IllegalArgumentException("Tax rate can't be negative: " + rate);
+                        }
+                        break;
+                    case "--purge-zero-profit":
+                        options.purgeZeroProfit = true;
+                        break;
+                    case "--output-dir":
+                        options.outputDir = Paths.get(value(args, ++i, arg));
+                        if (!Files.isDirectory(options.outputDir)) {
+                            throw new IllegalArgumentException("Not a directory: " + options.outputDir);
+                        }
+                        break;
+                    case "--source-checksums":
+                        options.checksumMode = TransactionValidator.ChecksumMode.SOURCE_LINE;
+                        break;
+                    case "--format":
+                        String format = value(args, ++i, arg);
+                        if (!format.equals("json") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format: " + format);
+                        }
+                        options.csv = format.equals("csv");
+                        break;
+                    case "--metrics":
+                        options.metrics = true;
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        options.paths.add(arg);
+                        break;
+                }
+            }
+            if (options.taxRate == null) {
+                throw new IllegalArgumentException("No tax rate given");
+            }
+            if (options.paths.isEmpty()) {
+                throw new IllegalArgumentException("No files given");
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            return args[index];
+        }
+    }
+
+    //Outcome of one file, or the total of all files with a null file
+    static final class Result {
+        final String file;
+        long records;
+        long valid;
+        long zeroProfitDeleted;
+        BigDecimal totalProfit = BigDecimal.ZERO;
+        BigDecimal totalLoss = BigDecimal.ZERO;
+        BigDecimal taxRate;
+        BigDecimal finalTax;
+        long millis;
+
+        Result(String file) {
+            this.file = file;
+        }
+
+        void add(Result other) {
+            records += other.records;
+            valid += other.valid;
+            zeroProfitDeleted += other.zeroProfitDeleted;
+            totalProfit = totalProfit.add(other.totalProfit);
+            totalLoss = totalLoss.add(other.totalLoss);
+            millis += other.millis;
+        }
+    }
+
+    private interface ResultWriter {
+        void start();
+
+        void write(Result result);
+
+        void writeError(String file, String error);
+    }
+
+    //One JSON object per line, the total has "file": null
+    private static final class JsonResults implements ResultWriter {
+        private final PrintStream out;
+
+        JsonResults(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(Result result) {
+            out.println("{\"file\":" + (result.file == null ? "null" : quote(result.file))
+                    + ",\"records\":" + result.records
+                    + ",\"valid\":" + result.valid
+                    + ",\"invalid\":" + (result.records - result.valid)
+                    + ",\"zeroProfitDeleted\":" + result.zeroProfitDeleted
+                    + ",\"totalProfit\":" + result.totalProfit.toPlainString()
+                    + ",\"totalLoss\":" + result.totalLoss.toPlainString()
+                    + ",\"taxRate\":" + result.taxRate.toPlainString()
+                    + ",\"finalTax\":" + result.finalTax.toPlainString()
+                    + ",\"millis\":" + result.millis + "}");
+        }
+
+        @Override
+        public void writeError(String file, String error) {
+            out.println("{\"file\":" + quote(file) + ",\"error\":" + quote(error) + "}");
+        }
+
+        static String quote(String text) {
+            StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    quoted.append('\\').append(c);
+                } else if (c < 0x20) {
+                    quoted.append(String.format("\\u%04x", (int) c));
+                } else {
+                    quoted.append(c);
+                }
+            }
+            return quoted.append('"').toString();
+        }
+    }
+
+    //Header line, one line per file and the TOTAL line, errors in the error column
+    private static final class CsvResults implements ResultWriter {
+        private final PrintStream out;
+
+        CsvResults(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start() {
+            out.println("File,Records,Valid,Invalid,Zero Profit Deleted,Total Profit,Total Loss,Tax Rate,Final Tax,"
+                    + "Millis,Error");
+        }
+
+        @Override
+        public void write(Result result) {
+            out.println((result.file == null ? "TOTAL" : quote(result.file)) + "," + result.records + "," + result.valid + ","
+                    + (result.records - result.valid) + "," + result.zeroProfitDeleted + ","
+                    + result.totalProfit.toPlainString() + "," + result.totalLoss.toPlainString() + ","
+                    + result.taxRate.toPlainString() + "," + result.finalTax.toPlainString() + ","
+                    + result.millis + ",");
+        }
+
+        @Override
+        public void writeError(String file, String error) {
+            out.println(quote(file) + ",,,,,,,,,," + quote(error));
+        }
+
+        static String quote(String text) {
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package javaApplication;
+
+import javaApplication.TransactionValidator.ChecksumMode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+//Append only log of the edits made to an imported file, kept next to it as <file>.journal.
+//An edit costs one appended line instead of rewriting the file; opening the journal after the import
+//replays the edits. Compaction writes the records into the file and starts the journal over.
+//A journal whose file was changed since (or only touched, copied or restored) is moved aside to
+//<file>.journal.stale instead of being replayed. The journal file only exists while it has entries,
+//opening a file without edits doesn't write next to it.
+//
+//Format, one entry per line:
+//  #journal,<file stamp>   the file the entries apply to (size, modification time, file key)
+//  U,<index>,<record>      updateRecord(index, record), record as exported
+//  D,<index>               deleteRecord(index)
+//  Z                       deleteZeroProfitRecords()
+//  C                       a compaction with all entries before it was started
+public class ChangeJournal implements Closeable {
+
+    public static final String SUFFIX = ".journal";
+    public static final String STALE_SUFFIX = ".stale";
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    private static final String HEADER = "#journal,";
+    private static final String COMPACTION = "C";
+
+    private final Path filePath;
+    private final Path journalPath;
+    private final int compactThreshold;
+    // null while the journal file doesn't exist, it is created by the first entry
+    private Writer writer;
+    private boolean closed;
+    // file content the entries apply to, as written in the header
+    private String stamp;
+    private int entryCount;
+    // entries since the last compaction marker, they are kept when the compaction finishes
+    private final List<String> sinceCompaction = new ArrayList<>();
+    private boolean compacting;
+    // where a journal that didn't match the file was moved on open, null when there was none
+    private Path staleJournalPath;
+
+    private ChangeJournal(Path filePath, int compactThreshold) {
+        this.filePath = filePath.toAbsolutePath();
+        this.journalPath = Paths.get(this.filePath + SUFFIX);
+        this.compactThreshold = compactThreshold;
+    }
+
+    public static ChangeJournal open(String filePath, TaxProcessor processor) throws IOException {
+        return open(filePath, processor, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    //Replays the journal of filePath (if there is one) on the processor, which has to hold the records
+    //imported from filePath, and opens it for new entries. Returns the journal ready for appending.
+    //Nothing is written when there are no entries to replay.
+    public static ChangeJournal open(String filePath, TaxProcessor processor, int compactThreshold)
+            throws IOException {
+        ChangeJournal journal = new ChangeJournal(Paths.get(filePath), compactThreshold);
+        journal.replay(processor);
+        return journal;
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    //The journal found on open that was written for other file content, its entries weren't replayed.
+    //Null when there was none.
+    public Path getStaleJournalPath() {
+        return staleJournalPath;
+    }
+
+    //Entries written since the file was last compacted
+    public int size() {
+        return entryCount;
+    }
+
+    public void recordUpdate(int index, TransactionRecord record) throws IOException {
+        StringWriter line = new StringWriter();
+        line.append("U,").append(String.valueOf(index)).append(",");
+        TransactionExporter.writeRecord(line, record);
+        // without the newline the exporter ends the record with
+        StringBuffer text = line.getBuffer();
+        append(text.substring(0, text.length() - 1));
+    }
+
+    public void recordDelete(int index) throws IOException {
+        append("D," + index);
+    }
+
+    public void recordDeleteZeroProfit() throws IOException {
+        append("Z");
+    }
+
+    public boolean needsCompaction() {
+        return !compacting && entryCount >= compactThreshold;
+    }
+
+    //Writes the records (the processor's current state) into the file and starts the journal over
+    public void compact(List<TransactionRecord> records) throws IOException {
+        startCompaction();
+        try {
+            TransactionExporter.exportToCSVAtomically(records, filePath.toString());
+        } catch (IOException e) {
+            cancelCompaction();
+            throw e;
+        }
+        finishCompaction();
+    }
+
+    //For compacting in the background: call before taking the records that are written into the file,
+    //then finishCompaction() once the file was replaced or cancelCompaction() when that failed.
+    //Entries recorded meanwhile stay in the journal.
+    public void startCompaction() throws IOException {
+        append(COMPACTION);
+        sinceCompaction.clear();
+        entryCount = 0;
+        compacting = true;
+    }
+
+    public void finishCompaction() throws IOException {
+        if (!compacting) {
+            return;
+        }
+        // the entries apply to the file as written now
+        stamp = fileStamp();
+        if (sinceCompaction.isEmpty()) {
+            closeWriter();
+            Files.deleteIfExists(journalPath);
+        } else {
+            rewrite(sinceCompaction);
+        }
+        compacting = false;
+    }
+
+    public void cancelCompaction() {
+        compacting = false;
+    }
+
+    //Writes the records into the file if there are edits only the journal has, then closes it.
+    //Other readers of the file don't know the journal, call this when done editing the file.
+    public void compactAndClose(List<TransactionRecord> records) throws IOException {
+        try {
+            if (entryCount > 0 || compacting) {
+                compact(records);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        closeWriter();
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void append(String line) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed: " + journalPath);
+        }
+        if (writer == null) {
+            rewrite(new ArrayList<>());
+        }
+        writer.append(line).append("\n");
+        writer.flush();
+        if (!line.equals(COMPACTION)) {
+            sinceCompaction.add(line);
+            entryCount++;
+        }
+    }
+
+    private void replay(TaxProcessor processor) throws IOException {
+        stamp = fileStamp();
+        List<String> entries = new ArrayList<>();
+        boolean found = Files.exists(journalPath);
+        if (found) {
+            String content = Files.readString(journalPath, Charset.defaultCharset());
+            // a last line without newline was cut off while being written
+            List<String> lines = new ArrayList<>(List.of(content.split("\n", -1)));
+            lines.remove(lines.size() - 1);
+
+            if (!lines.isEmpty() && lines.get(0).equals(HEADER + stamp)) {
+                // the file is the one the journal was written for
+                entries.addAll(lines.subList(1, lines.size()));
+            } else if (!lines.isEmpty() && lines.get(0).startsWith(HEADER) && lines.lastIndexOf(COMPACTION) > 0) {
+                // the file was replaced by a compaction that didn't get to start the journal over
+                entries.addAll(lines.subList(lines.lastIndexOf(COMPACTION) + 1, lines.size()));
+            } else if (lines.size() > 1 || !lines.isEmpty() && !lines.get(0).startsWith(HEADER)) {
+                // the file was changed some other way, or only got a new timestamp or file key; whether the
+                // entries still apply can't be told, so they are kept for the user instead of replayed
+                staleJournalPath = moveAside();
+                found = false;
+            }
+            entries.removeIf(entry -> entry.equals(COMPACTION));
+        }
+
+        if (entries.isEmpty()) {
+            if (found) {
+                try {
+                    // nothing left to replay, a new journal is started by the next entry
+                    Files.delete(journalPath);
+                } catch (IOException e) {
+                    // read only directory, the first entry replaces it
+                }
+            }
+            return;
+        }
+        for (String entry : entries) {
+            apply(processor, entry);
+        }
+        rewrite(entries);
+    }
+
+    private static void apply(TaxProcessor processor, String entry) {
+        if (entry.equals("Z")) {
+            processor.deleteZeroProfitRecords();
+            return;
+        }
+        int indexEnd = entry.indexOf(',', 2);
+        if (entry.startsWith("D,")) {
+            processor.deleteRecord(Integer.parseInt(entry.substring(2)));
+        } else if (entry.startsWith("U,") && indexEnd > 0) {
+            int index = Integer.parseInt(entry.substring(2, indexEnd));
+            processor.updateRecord(index, TransactionImporter.parseRecord(entry.substring(indexEnd + 1),
+                    ChecksumMode.RECONSTRUCTED_LINE));
+        } else {
+            throw new IllegalArgumentException("Invalid journal entry: " + entry);
+        }
+    }
+
+    // renames the journal to the first free <journal>.stale, <journal>.stale.2, ...
+    private Path moveAside() throws IOException {
+        Path stale = Paths.get(journalPath + STALE_SUFFIX);
+        for (int i = 2; Files.exists(stale); i++) {
+            stale = Paths.get(journalPath + STALE_SUFFIX + "." + i);
+        }
+        Files.move(journalPath, stale);
+        return stale;
+    }
+
+    // replaces the journal with a new one for the stamped file content holding the given entries
+    private void rewrite(List<String> entries) throws IOException {
+        closeWriter();
+        Path temp = Files.createTempFile(journalPath.getParent(), journalPath.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, Charset.defaultCharset())) {
+                out.append(HEADER).append(stamp).append("\n");
+                for (String entry : entries) {
+                    out.append(entry).append("\n");
+                }
+            }
+            try {
+                Files.move(temp, journalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        List<String> kept = new ArrayList<>(entries);
+        sinceCompaction.clear();
+        sinceCompaction.addAll(kept);
+        entryCount = kept.size();
+        writer = Files.newBufferedWriter(journalPath, Charset.defaultCharset(), StandardOpenOption.APPEND);
+    }
+
+    // identifies the file content the entries apply to, a replaced file has a new file key or timestamp
+    private String fileStamp() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        return attributes.size() + "," + attributes.lastModifiedTime().toMillis() + "," + attributes.fileKey();
+    }
+}
@@ -0,0 +1,130 @@
+package javaApplication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+//Byte level replacement for BufferedReader.readLine: lines end at \n, \r or \r\n
+//and are returned as bounds into buffer() instead of strings
+class CsvLineReader implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // null when the whole input is already in the buffer (a mapped chunk)
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private int position;
+    private int limit;
+    private boolean skipLF;
+    private int lineStart;
+    private int lineEnd;
+    // input bytes that were dropped from the front of the buffer
+    private long discarded;
+
+    CsvLineReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    }
+
+    CsvLineReader(ByteBuffer input) {
+        this.channel = null;
+        this.buffer = input;
+        this.position = input.position();
+        this.limit = input.limit();
+    }
+
+    //Moves to the next line, false at the end of the input
+    boolean nextLine() throws IOException {
+        int start = position;
+        int i = position;
+        while (true) {
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (skipLF) {
+                    skipLF = false;
+                    if (b == '\n') {
+                        start = ++i;
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    lineStart = start;
+                    lineEnd = i;
+                    skipLF = b == '\r';
+                    position = i + 1;
+                    return true;
+                }
+                i++;
+            }
+
+            if (channel != null) {
+                boolean more = fill(start);
+                i -= start;
+                start = 0;
+                if (more) {
+                    continue;
+                }
+            }
+
+            position = limit;
+            if (start < limit) {
+                // last line without a line break
+                lineStart = start;
+                lineEnd = limit;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    //Input bytes up to the end of the current line
+    long bytesRead() {
+        return discarded + position;
+    }
+
+    // keeps the unfinished line at the front of the buffer and reads more after it
+    private boolean fill(int keepFrom) throws IOException {
+        int kept = limit - keepFrom;
+        if (kept == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer.array(), keepFrom, kept);
+            buffer = larger;
+        } else if (keepFrom > 0) {
+            System.arraycopy(buffer.array(), keepFrom, buffer.array(), 0, kept);
+        }
+        discarded += keepFrom;
+        limit = kept;
+        position = 0;
+
+        int read;
+        do {
+            buffer.limit(buffer.capacity()).position(limit);
+            read = channel.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package javaApplication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+//Byte level replacement for writing records through a Writer: fields are encoded straight into a
+//reusable byte block that goes to the channel through a direct buffer in large writes. Numbers are
+//formatted from their unscaled value and scale with the same text as BigDecimal.toString() / String.valueOf().
+//Only for ASCII compatible charsets (TransactionImporter.isAsciiCompatible).
+//Without a channel the block grows instead and holds all output, see bytes().
+class CsvRecordWriter implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final Charset charset;
+    private final ByteBuffer buffer;
+    // the block being filled, copied into buffer in one go when full
+    private byte[] block;
+    private int count;
+    // digits of one number, filled from the end; a long has at most 19 digits and a sign
+    private final byte[] digits = new byte[20];
+
+    CsvRecordWriter(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    CsvRecordWriter(WritableByteChannel channel, Charset charset, int bufferSize) {
+        this.channel = channel;
+        this.charset = charset;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.block = new byte[bufferSize];
+    }
+
+    //Formats into memory only
+    CsvRecordWriter(Charset charset, int initialSize) {
+        this.channel = null;
+        this.charset = charset;
+        this.buffer = null;
+        this.block = new byte[initialSize];
+    }
+
+    //What was written so far, only for a writer without channel
+    ByteBuffer bytes() {
+        return ByteBuffer.wrap(block, 0, count);
+    }
+
+    //Same bytes as TransactionExporter.writeRecord
+    void writeRecord(TransactionRecord record) throws IOException {
+        putText(record.getBillNumber());
+        putByte(',');
+        putText(record.getItemCode());
+        putByte(',');
+        putDecimal(record.getInternalPriceMoney());
+        putByte(',');
+        putDecimal(record.getDiscountMoney());
+        putByte(',');
+        putDecimal(record.getSalePriceMoney());
+        putByte(',');
+        putLong(record.getQuantity());
+        putByte(',');
+        putDecimal(record.getLineTotalMoney());
+        putByte(',');
+        putLong(record.getOriginalChecksum());
+        putByte('\n');
+    }
+
+    void putByte(char c) throws IOException {
+        if (count == block.length) {
+            makeRoom(1);
+        }
+        block[count++] = (byte) c;
+    }
+
+    //Text in the writer's charset, ASCII is copied byte by byte
+    void putText(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // encoded the way a Writer does it, including replacement of unmappable characters
+                putBytes(text.substring(i).getBytes(charset));
+                return;
+            }
+            if (count == block.length) {
+                makeRoom(1);
+            }
+            block[count++] = (byte) c;
+        }
+    }
+
+    void putDecimal(Money value) throws IOException {
+        if (value.isCompact()) {
+            putDecimal(value.unscaledValue(), value.scale());
+        } else {
+            putDecimal(value.toBigDecimal());
+        }
+    }
+
+    void putDecimal(BigDecimal value) throws IOException {
+        putText(value.toString());
+    }
+
+    //Same text as BigDecimal.valueOf(unscaled, scale).toString()
+    void putDecimal(long unscaled, int scale) throws IOException {
+        int start = fillDigits(unscaled);
+        int precision = digits.length - start;
+        if (unscaled < 0) {
+            putByte('-');
+        }
+        if (scale == 0) {
+            putDigits(start, digits.length);
+            return;
+        }
+
+        long adjusted = (long) precision - 1 - scale;
+        if (scale > 0 && adjusted >= -6) {
+            // plain notation
+            if (precision > scale) {
+                int point = digits.length - scale;
+                putDigits(start, point);
+                putByte('.');
+                putDigits(point, digits.length);
+            } else {
+                putByte('0');
+                putByte('.');
+                for (int i = precision; i < scale; i++) {
+                    putByte('0');
+                }
+                putDigits(start, digits.length);
+            }
+            return;
+        }
+
+        // scientific notation: first digit, the others after a '.', then the exponent with its sign
+        putDigits(start, start + 1);
+        if (precision > 1) {
+            putByte('.');
+            putDigits(start + 1, digits.length);
+        }
+        putByte('E');
+        putByte(adjusted > 0 ? '+' : '-');
+        int exponentStart = fillDigits(Math.abs(adjusted));
+        putDigits(exponentStart, digits.length);
+    }
+
+    //Same text as String.valueOf(value)
+    void putLong(long value) throws IOException {
+        int start = fillDigits(value);
+        if (value < 0) {
+            putByte('-');
+        }
+        putDigits(start, digits.length);
+    }
+
+    // writes the digits of |value| to the end of digits, returns where they start
+    private int fillDigits(long value) {
+        // negative, so Long.MIN_VALUE works too
+        long remaining = value < 0 ? value : -value;
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        return start;
+    }
+
+    private void putDigits(int from, int to) throws IOException {
+        if (block.length - count < to - from) {
+            makeRoom(to - from);
+        }
+        System.arraycopy(digits, from, block, count, to - from);
+        count += to - from;
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (count == block.length) {
+                makeRoom(bytes.length - offset);
+            }
+            int length = Math.min(block.length - count, bytes.length - offset);
+            System.arraycopy(bytes, offset, block, count, length);
+            count += length;
+            offset += length;
+        }
+    }
+
+    // at least one byte, and length bytes when they fit a block
+    private void makeRoom(int length) throws IOException {
+        if (channel != null) {
+            flush();
+        } else {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, count + length));
+        }
+    }
+
+    void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.clear();
+        buffer.put(block, 0, count);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        count = 0;
+    }
+
+    //Writes what is buffered and closes the channel
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
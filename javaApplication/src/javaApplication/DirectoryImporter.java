@@ -0,0 +1,252 @@
+package javaApplication;
+
+import javaApplication.TransactionValidator.ChecksumMode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Imports many tax files at once, like the tax_<timestamp>.csv files pos.py writes to its tax directory.
+//Every file is imported by its own task, the records are merged into one TaxProcessor in file order and
+//each file's counts and totals are kept for a per file breakdown. A file that fails doesn't stop the others.
+public class DirectoryImporter {
+
+    //The *.csv files of the directory sorted by name, pos.py's timestamped names sort in creation order
+    public static List<Path> listTaxFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (entry.getFileName().toString().toLowerCase().endsWith(".csv") && Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public static Result importDirectory(String directory) throws IOException {
+        return importFiles(listTaxFiles(Paths.get(directory)));
+    }
+
+    public static Result importDirectory(String directory, ExecutorService executor) throws IOException {
+        return importFiles(listTaxFiles(Paths.get(directory)), executor, ChecksumMode.RECONSTRUCTED_LINE);
+    }
+
+    //Imports on a pool of one thread per processor (at most one per file), shut down afterwards
+    public static Result importFiles(List<Path> files) throws IOException {
+        if (files.isEmpty()) {
+            return importFiles(files, null, ChecksumMode.RECONSTRUCTED_LINE);
+        }
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return importFiles(files, executor, ChecksumMode.RECONSTRUCTED_LINE);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //Submits one import per file to the executor, which bounds how many files are read at once
+    //(a virtual thread per task executor works too, then every file is read at once).
+    //Files are read whole into memory, so the merged processor needs room for all records.
+    public static Result importFiles(List<Path> files, ExecutorService executor, ChecksumMode checksumMode)
+            throws IOException {
+        List<Future<FileImport>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(executor.submit(new FileTask(file, checksumMode)));
+        }
+
+        List<FileImport> imports = new ArrayList<>(files.size());
+        try {
+            for (Future<FileImport> future : futures) {
+                imports.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            for (Future<FileImport> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Directory import interrupted");
+        } catch (ExecutionException e) {
+            // FileTask catches what the import throws, only errors get here
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        int total = 0;
+        for (FileImport fileImport : imports) {
+            total += fileImport.records.size();
+        }
+        List<TransactionRecord> records = new ArrayList<>(total);
+        List<FileResult> fileResults = new ArrayList<>(imports.size());
+        for (FileImport fileImport : imports) {
+            records.addAll(fileImport.records);
+            fileResults.add(fileImport.result);
+        }
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(records);
+        return new Result(processor, fileResults);
+    }
+
+    //Imports one file and sums it up, failures are kept in the result
+    private static final class FileTask implements Callable<FileImport> {
+        private final Path file;
+        private final ChecksumMode checksumMode;
+
+        FileTask(Path file, ChecksumMode checksumMode) {
+            this.file = file;
+            this.checksumMode = checksumMode;
+        }
+
+        @Override
+        public FileImport call() {
+            long start = System.nanoTime();
+            List<TransactionRecord> records;
+            try {
+                records = TransactionImporter.importFromCSV(file.toString(), checksumMode);
+            } catch (IOException | RuntimeException e) {
+                return new FileImport(Collections.emptyList(), new FileResult(file, 0, 0, BigDecimal.ZERO,
+                        BigDecimal.ZERO, 0, System.nanoTime() - start, e));
+            }
+            ProfitTotals totals = new ProfitTotals();
+            int valid = 0;
+            for (TransactionRecord record : records) {
+                totals.add(record);
+                valid += record.isValid() ? 1 : 0;
+            }
+            return new FileImport(records, new FileResult(file, records.size(), valid, totals.getTotalProfit(),
+                    totals.getTotalLoss(), PipelineMetrics.fileSize(file.toString()), System.nanoTime() - start,
+                    null));
+        }
+    }
+
+    private static final class FileImport {
+        final List<TransactionRecord> records;
+        final FileResult result;
+
+        FileImport(List<TransactionRecord> records, FileResult result) {
+            this.records = records;
+            this.result = result;
+        }
+    }
+
+    //The merged records and the breakdown per file, in the order the files were given
+    public static final class Result {
+        private final TaxProcessor processor;
+        private final List<FileResult> files;
+
+        Result(TaxProcessor processor, List<FileResult> files) {
+            this.processor = processor;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        //All records of the files that were imported, the tax rate is still to be set
+        public TaxProcessor getProcessor() {
+            return processor;
+        }
+
+        public List<FileResult> getFiles() {
+            return files;
+        }
+
+        public List<FileResult> getFailedFiles() {
+            List<FileResult> failed = new ArrayList<>();
+            for (FileResult file : files) {
+                if (file.getError() != null) {
+                    failed.add(file);
+                }
+            }
+            return failed;
+        }
+
+        public long getBytes() {
+            long bytes = 0;
+            for (FileResult file : files) {
+                bytes += file.getBytes();
+            }
+            return bytes;
+        }
+    }
+
+    //Counts and totals of one file's records, or why it couldn't be imported
+    public static final class FileResult {
+        private final Path file;
+        private final int records;
+        private final int valid;
+        private final BigDecimal totalProfit;
+        private final BigDecimal totalLoss;
+        private final long bytes;
+        private final long nanos;
+        private final Exception error;
+
+        FileResult(Path file, int records, int valid, BigDecimal totalProfit, BigDecimal totalLoss, long bytes,
+                   long nanos, Exception error) {
+            this.file = file;
+            this.records = records;
+            this.valid = valid;
+            this.totalProfit = totalProfit;
+            this.totalLoss = totalLoss;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        public int getValidCount() {
+            return valid;
+        }
+
+        public int getInvalidCount() {
+            return records - valid;
+        }
+
+        public BigDecimal getTotalProfit() {
+            return totalProfit;
+        }
+
+        public BigDecimal getTotalLoss() {
+            return totalLoss;
+        }
+
+        //Tax of this file alone at the given rate, same calculation as TaxProcessor.calculateFinalTax
+        public BigDecimal calculateFinalTax(BigDecimal taxRate) {
+            return ProfitTotals.calculateFinalTax(totalProfit, totalLoss, taxRate);
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        //Import time of the file, including waiting for disk but not for a free thread
+        public long getNanos() {
+            return nanos;
+        }
+
+        //What the import threw, null when the file was imported
+        public Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package javaApplication;
+
+import javaApplication.TransactionValidator.ChecksumMode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+//Cache of parsed and validated imports in a local directory. Entries are snapshots (TransactionSnapshot)
+//keyed by the file's path, size, modification time and SHA-256 content hash, so an unchanged file loads
+//from its snapshot instead of being parsed and validated again, and a changed one never matches an old
+//entry. Least recently used entries are evicted once the directory holds more than maxBytes.
+public class ImportCache {
+
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String SUFFIX = ".snapshot";
+    // bytes read per step while hashing
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+    private long hits;
+    private long misses;
+
+    public ImportCache(String directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    public ImportCache(String directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.maxBytes = maxBytes;
+    }
+
+    //Per user cache directory
+    public static String defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "javaApplication", "imports").toString();
+    }
+
+    public List<TransactionRecord> importFromCSV(String filePath) throws IOException {
+        return importFromCSV(filePath, ChecksumMode.RECONSTRUCTED_LINE);
+    }
+
+    //Same records as TransactionImporter.importFromCSV, from the cache when the file hasn't changed
+    public List<TransactionRecord> importFromCSV(String filePath, ChecksumMode checksumMode) throws IOException {
+        List<TransactionRecord> records = new ArrayList<>();
+        forEachRecord(filePath, checksumMode, records::add, null);
+        return records;
+    }
+
+    //Same as TransactionImporter.forEachRecord with progress, a cached file is reported once with all its
+    //records. An import stopped by the progress listener is not stored.
+    public void forEachRecord(String filePath, ChecksumMode checksumMode, Consumer<? super TransactionRecord> consumer,
+                              TransactionImporter.ProgressListener progress) throws IOException {
+        Path source = Paths.get(filePath).toAbsolutePath().normalize();
+        BasicFileAttributes before = Files.readAttributes(source, BasicFileAttributes.class);
+        String prefix = entryPrefix(source, checksumMode);
+        Path entry = directory.resolve(prefix + hash((before.size() + "," + before.lastModifiedTime().toMillis()
+                + "," + contentHash(source)).getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+
+        if (Files.isRegularFile(entry)) {
+            List<TransactionRecord> records = null;
+            try {
+                records = TransactionSnapshot.load(entry.toString()).records;
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // damaged entry, imported again and replaced below
+                Files.deleteIfExists(entry);
+            }
+            if (records != null) {
+                synchronized (this) {
+                    hits++;
+                }
+                records.forEach(consumer);
+                if (progress != null && !progress.progress(before.size(), records.size())) {
+                    throw new CancellationException("Import cancelled");
+                }
+                return;
+            }
+        }
+
+        List<TransactionRecord> records = new ArrayList<>();
+        TransactionImporter.forEachRecord(filePath, checksumMode, record -> {
+            records.add(record);
+            consumer.accept(record);
+        }, progress);
+        synchronized (this) {
+            misses++;
+        }
+        BasicFileAttributes after = Files.readAttributes(source, BasicFileAttributes.class);
+        // a file changed while it was read doesn't match the key any more
+        if (after.size() == before.size() && after.lastModifiedTime().equals(before.lastModifiedTime())) {
+            store(prefix, entry, records);
+        }
+    }
+
+    //Removes the entries of the file, for all checksum modes
+    public synchronized void invalidate(String filePath) throws IOException {
+        deleteEntries(pathHash(Paths.get(filePath).toAbsolutePath().normalize()) + "-", null);
+    }
+
+    public synchronized void clear() throws IOException {
+        deleteEntries("", null);
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    //Total size of the entries in the directory
+    public synchronized long size() throws IOException {
+        long size = 0;
+        for (Path entry : entries()) {
+            size += Files.size(entry);
+        }
+        return size;
+    }
+
+    // the cache only saves work, the records are returned even when they can't be stored
+    private synchronized void store(String prefix, Path entry, List<TransactionRecord> records) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, prefix, ".tmp");
+            TransactionSnapshot.write(records, BigDecimal.ZERO, temp.toString());
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // older versions of the same file can't match again
+            deleteEntries(prefix, entry);
+            evict();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = entries();
+        List<FileTime> used = new ArrayList<>(entries.size());
+        long size = 0;
+        for (Path entry : entries) {
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+            used.add(attributes.lastModifiedTime());
+            size += attributes.size();
+        }
+        List<Integer> order = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(used::get));
+        for (int i = 0; i < order.size() && size > maxBytes; i++) {
+            Path entry = entries.get(order.get(i));
+            size -= Files.size(entry);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    private void deleteEntries(String prefix, Path keep) throws IOException {
+        for (Path entry : entries()) {
+            if (entry.getFileName().toString().startsWith(prefix) && !entry.equals(keep)) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    // entries of one file and checksum mode start with this
+    private static String entryPrefix(Path source, ChecksumMode checksumMode) {
+        return pathHash(source) + "-" + checksumMode.ordinal() + "-";
+    }
+
+    private static String pathHash(Path source) {
+        return hash(source.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    //Read, not mapped: a mapping stays until it is garbage collected, and while it does Windows refuses
+    //to replace the file (the atomic saves and the journal compaction)
+    private static String contentHash(Path source) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
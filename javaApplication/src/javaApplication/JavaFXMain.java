@@ -1,13 +1,13 @@
 package javaApplication;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -18,12 +18,14 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.converter.BigDecimalStringConverter;
 import javafx.util.converter.IntegerStringConverter;
+import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
 import javafx.util.Duration;
 
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
 public class JavaFXMain extends Application {
@@ -36,7 +38,34 @@ public class JavaFXMain extends Application {
     private Label summaryInvalidLabel;
     private Label taxRateLabel;
     private Label totalTaxLabel;
+    private Label estimatedTaxLabel;
+    // refreshes the summary and estimated tax once in the next pulse after changes
+    private final AnimationTimer summaryRefresh = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            updateSummaryLabels();
+        }
+    };
     private TextField taxRateField;
+    private Label statusLabel;
+    private SaveService saveService;
+    // edits of the imported file since it was last written
+    private ChangeJournal journal;
+    // parsed imports of unchanged files, null when the cache directory can't be used
+    private ImportCache importCache;
+    // running import, null when there is none
+    private Task<List<TransactionRecord>> importTask;
+    private Button importButton;
+    private Button cancelImportButton;
+    private HBox operationButtons;
+    // the processor's records, shown again after an import's preview
+    private TransactionObservableList transactionItems;
+
+    // an edit as written to the journal
+    private interface JournalEntry {
+        void writeTo(ChangeJournal journal) throws IOException;
+    }
 
     // Updated color palette
     private static final String PRIMARY_BG = "#F1EFEC";
@@ -45,6 +74,12 @@ public class JavaFXMain extends Application {
     private static final String TEXT_COLOR = "#030303";
     private static final String SUCCESS_COLOR = "#1DB954";
 
+    private static final String VALID_STYLE = "-fx-text-fill: " + SUCCESS_COLOR + "; -fx-font-weight: bold;";
+    private static final String INVALID_STYLE = "-fx-text-fill: " + ACCENT_COLOR + "; -fx-font-weight: bold;";
+
+    // rows shown while the rest of the file is still importing
+    private static final int PREVIEW_ROWS = 5000;
+
     // Path to the imported CSV file (will be set on import)
     private String importedFilePath = null;
 
@@ -52,6 +87,47 @@ public class JavaFXMain extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         this.taxProcessor = new TaxProcessor();
+        taxProcessor.addChangeListener(new TaxProcessor.ChangeListener() {
+            @Override
+            public void changesFinished() {
+                summaryRefresh.start();
+            }
+        });
+        this.saveService = new SaveService(new SaveService.Listener() {
+            @Override
+            public void saved(String filePath, int recordCount) {
+                Platform.runLater(() -> {
+                    statusLabel.setText("Saved " + recordCount + " records");
+                    if (journal != null && filePath.equals(importedFilePath)) {
+                        try {
+                            journal.finishCompaction();
+                        } catch (IOException e) {
+                            showAlert(Alert.AlertType.ERROR, "Save Error",
+                                    "Failed to update the change journal", e.getMessage());
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void failed(String filePath, IOException e) {
+                Platform.runLater(() -> {
+                    statusLabel.setText("Save failed");
+                    if (journal != null && filePath.equals(importedFilePath)) {
+                        journal.cancelCompaction();
+                    }
+                    showAlert(Alert.AlertType.ERROR, "Save Error",
+                            "Failed to save tax data", e.getMessage());
+                });
+                e.printStackTrace();
+            }
+        });
+        try {
+            this.importCache = new ImportCache(ImportCache.defaultDirectory());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         primaryStage.setTitle("Government Tax Department System");
 
         BorderPane mainLayout = new BorderPane();
@@ -67,6 +143,15 @@ public class JavaFXMain extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // pending saves and the journaled edits are written before the application exits,
+        // close() waits for the save thread
+        closeJournal(() -> {
+        });
+        saveService.close();
+    }
+
     private HBox createHeader() {
         HBox header = new HBox();
         header.setStyle("-fx-background-color: " + ACCENT_COLOR + ";");
@@ -124,7 +209,7 @@ public class JavaFXMain extends Application {
             }
         });
 
-        Button importButton = createStyledButton("Import", ACCENT_COLOR);
+        importButton = createStyledButton("Import", ACCENT_COLOR);
         importButton.setOnAction(e -> {
             String filePath = filePathField.getText();
             if (filePath != null && !filePath.isEmpty()) {
@@ -135,7 +220,16 @@ public class JavaFXMain extends Application {
             }
         });
 
-        importSection.getChildren().addAll(importLabel, filePathField, browseButton, importButton);
+        cancelImportButton = createStyledButton("Cancel", ACCENT_COLOR);
+        cancelImportButton.setOnAction(e -> {
+            if (importTask != null) {
+                importTask.cancel();
+            }
+        });
+        cancelImportButton.setVisible(false);
+        cancelImportButton.managedProperty().bind(cancelImportButton.visibleProperty());
+
+        importSection.getChildren().addAll(importLabel, filePathField, browseButton, importButton, cancelImportButton);
 
         // Table section
         VBox tableSection = new VBox(10);
@@ -147,7 +241,7 @@ public class JavaFXMain extends Application {
         tableSection.getChildren().addAll(tableLabel, transactionTable);
 
         // Operation buttons
-        HBox operationButtons = new HBox(10);
+        operationButtons = new HBox(10);
         operationButtons.setAlignment(Pos.CENTER);
         Button editButton = createStyledButton("Edit Selected Transaction", ACCENT_COLOR);
         editButton.setOnAction(e -> editSelectedRecord());
@@ -199,6 +293,7 @@ public class JavaFXMain extends Application {
         taxRateTextLabel.setTextFill(Color.web(TEXT_COLOR));
         taxRateField = new TextField();
         taxRateField.setPrefWidth(100);
+        taxRateField.textProperty().addListener((observable, previous, text) -> summaryRefresh.start());
         Button calculateButton = createStyledButton("Calculate Tax", ACCENT_COLOR);
         calculateButton.setOnAction(e -> calculateTax());
         taxRateBox.getChildren().addAll(taxRateTextLabel, taxRateField, calculateButton);
@@ -208,8 +303,11 @@ public class JavaFXMain extends Application {
         totalTaxLabel = new Label("Total Tax: LKR 0.00");
         totalTaxLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
         totalTaxLabel.setTextFill(Color.web(SUCCESS_COLOR));
+        estimatedTaxLabel = new Label("Estimated Tax: LKR 0.00");
+        estimatedTaxLabel.setTextFill(Color.web(TEXT_COLOR));
 
-        taxCalculationBox.getChildren().addAll(taxCalcTitle, taxRateBox, taxRateLabel, totalTaxLabel);
+        taxCalculationBox.getChildren().addAll(taxCalcTitle, taxRateBox, taxRateLabel, totalTaxLabel,
+                estimatedTaxLabel);
 
         // Add spacer between the two sections
         Region spacer = new Region();
@@ -234,11 +332,14 @@ public class JavaFXMain extends Application {
 
     private TableView<TransactionRecord> createTransactionTable() {
         TableView<TransactionRecord> table = new TableView<>();
+        // follows the processor's changes row by row, the records are not copied
+        transactionItems = new TransactionObservableList(taxProcessor);
+        table.setItems(transactionItems);
         table.setEditable(true);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
         TableColumn<TransactionRecord, String> billNumberCol = new TableColumn<>("Bill Number");
-        billNumberCol.setCellValueFactory(new PropertyValueFactory<>("billNumber"));
+        billNumberCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getBillNumber));
         billNumberCol.setCellFactory(TextFieldTableCell.forTableColumn());
         billNumberCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -248,7 +349,7 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, String> itemCodeCol = new TableColumn<>("Item Code");
-        itemCodeCol.setCellValueFactory(new PropertyValueFactory<>("itemCode"));
+        itemCodeCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getItemCode));
         itemCodeCol.setCellFactory(TextFieldTableCell.forTableColumn());
         itemCodeCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -258,7 +359,7 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, BigDecimal> internalPriceCol = new TableColumn<>("Internal Price");
-        internalPriceCol.setCellValueFactory(new PropertyValueFactory<>("internalPrice"));
+        internalPriceCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getInternalPrice));
         internalPriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
         internalPriceCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -268,7 +369,7 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, BigDecimal> discountCol = new TableColumn<>("Discount");
-        discountCol.setCellValueFactory(new PropertyValueFactory<>("discount"));
+        discountCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getDiscount));
         discountCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
         discountCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -278,7 +379,7 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, BigDecimal> salePriceCol = new TableColumn<>("Sale Price");
-        salePriceCol.setCellValueFactory(new PropertyValueFactory<>("salePrice"));
+        salePriceCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getSalePrice));
         salePriceCol.setCellFactory(TextFieldTableCell.forTableColumn(new BigDecimalStringConverter()));
         salePriceCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -288,7 +389,7 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, Integer> quantityCol = new TableColumn<>("Quantity");
-        quantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        quantityCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getQuantity));
         quantityCol.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
         quantityCol.setOnEditCommit(e -> {
             int row = e.getTablePosition().getRow();
@@ -298,34 +399,20 @@ public class JavaFXMain extends Application {
         });
 
         TableColumn<TransactionRecord, BigDecimal> lineTotalCol = new TableColumn<>("Total Value");
-        lineTotalCol.setCellValueFactory(new PropertyValueFactory<>("lineTotal"));
+        lineTotalCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getLineTotal));
+        lineTotalCol.setCellFactory(TransactionColumns.textCell());
 
         TableColumn<TransactionRecord, Integer> checksumCol = new TableColumn<>("Checksum");
-        checksumCol.setCellValueFactory(new PropertyValueFactory<>("originalChecksum"));
+        checksumCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getOriginalChecksum));
+        checksumCol.setCellFactory(TransactionColumns.textCell());
 
         TableColumn<TransactionRecord, BigDecimal> profitCol = new TableColumn<>("Profit");
-        profitCol.setCellValueFactory(new PropertyValueFactory<>("profit"));
+        profitCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::getProfit));
+        profitCol.setCellFactory(TransactionColumns.textCell());
 
         TableColumn<TransactionRecord, Boolean> statusCol = new TableColumn<>("Status");
-        statusCol.setCellValueFactory(new PropertyValueFactory<>("valid"));
-        statusCol.setCellFactory(column -> new TableCell<>() {
-            @Override
-            protected void updateItem(Boolean valid, boolean empty) {
-                super.updateItem(valid, empty);
-                if (empty) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    if (valid) {
-                        setText("Valid");
-                        setStyle("-fx-text-fill: " + SUCCESS_COLOR + "; -fx-font-weight: bold;");
-                    } else {
-                        setText("Invalid");
-                        setStyle("-fx-text-fill: " + ACCENT_COLOR + "; -fx-font-weight: bold;");
-                    }
-                }
-            }
-        });
+        statusCol.setCellValueFactory(TransactionColumns.value(TransactionRecord::isValid));
+        statusCol.setCellFactory(TransactionColumns.statusCell(VALID_STYLE, INVALID_STYLE));
 
         table.getColumns().addAll(
                 billNumberCol, itemCodeCol, internalPriceCol, discountCol,
@@ -338,7 +425,7 @@ public class JavaFXMain extends Application {
         HBox statusBar = new HBox();
         statusBar.setPadding(new Insets(5, 15, 5, 15));
         statusBar.setStyle("-fx-background-color: " + SECTION_BG + "; -fx-border-color: " + ACCENT_COLOR + "; -fx-border-width: 1 0 0 0;");
-        Label statusLabel = new Label("Ready");
+        statusLabel = new Label("Ready");
         statusLabel.setTextFill(Color.web(TEXT_COLOR));
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
@@ -348,33 +435,135 @@ public class JavaFXMain extends Application {
         return statusBar;
     }
 
+    //Imports on a background task, the first rows are shown while the rest of the file loads.
+    //Editing is off until the import is done, a cancelled or failed import leaves the current records.
     private void importTaxFile(String filePath) {
-        try {
-            List<TransactionRecord> transactions = TransactionImporter.importFromCSV(filePath);
-            taxProcessor.setTransactions(transactions);
-            updateTransactionTable();
-            updateSummaryLabels();
+        long fileSize = new File(filePath).length();
+        Task<List<TransactionRecord>> task = new Task<List<TransactionRecord>>() {
+            @Override
+            protected List<TransactionRecord> call() throws IOException {
+                List<TransactionRecord> transactions = new ArrayList<>();
+                // called on this thread, so the list can be copied here
+                TransactionImporter.ProgressListener progress = new TransactionImporter.ProgressListener() {
+                    private boolean previewShown;
+
+                    @Override
+                    public boolean progress(long bytesRead, int records) {
+                        updateProgress(bytesRead, fileSize);
+                        updateMessage("Importing... " + records + " records, "
+                                + bytesRead / 1024 + " of " + fileSize / 1024 + " KB");
+                        if (!previewShown && records >= PREVIEW_ROWS) {
+                            previewShown = true;
+                            List<TransactionRecord> preview = new ArrayList<>(transactions);
+                            Platform.runLater(() -> {
+                                if (!isCancelled()) {
+                                    transactionTable.setItems(FXCollections.observableArrayList(preview));
+                                }
+                            });
+                        }
+                        return !isCancelled();
+                    }
+                };
+                if (importCache != null) {
+                    importCache.forEachRecord(filePath, TransactionValidator.ChecksumMode.RECONSTRUCTED_LINE,
+                            transactions::add, progress);
+                } else {
+                    TransactionImporter.forEachRecord(filePath, TransactionValidator.ChecksumMode.RECONSTRUCTED_LINE,
+                            transactions::add, progress);
+                }
+                return transactions;
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            finishImport();
+            // edits made after the file was last written, replayed aside so a journal that can't be used
+            // leaves the imported records as they are
+            TaxProcessor imported = new TaxProcessor();
+            imported.setTransactions(task.getValue());
+            ChangeJournal opened = null;
+            Exception journalFailure = null;
+            try {
+                opened = ChangeJournal.open(filePath, imported);
+            } catch (IOException | RuntimeException ex) {
+                journalFailure = ex;
+                ex.printStackTrace();
+            }
+            taxProcessor.setTransactions(opened != null ? imported.getTransactions() : task.getValue());
+            journal = opened;
             importedFilePath = filePath;
-            showSuccessDialog("File Import Success", "The tax transaction file was imported successfully.");
-        } catch (IOException e) {
+            statusLabel.setText("Imported " + taxProcessor.size() + " records");
+            if (journalFailure != null) {
+                showAlert(Alert.AlertType.ERROR, "Change Journal Error",
+                        "Failed to open the change journal",
+                        journalFailure.getMessage() + "\nEdits not yet in the file are not shown."
+                                + " Each edit is now saved by rewriting the file.");
+            } else if (opened.getStaleJournalPath() != null) {
+                showAlert(Alert.AlertType.WARNING, "Change Journal",
+                        "The file changed since the last edits were journaled",
+                        "Those edits were not applied and were kept in " + opened.getStaleJournalPath());
+            } else {
+                showSuccessDialog("File Import Success", "The tax transaction file was imported successfully.");
+            }
+        });
+        task.setOnCancelled(e -> {
+            finishImport();
+            statusLabel.setText("Import cancelled");
+        });
+        task.setOnFailed(e -> {
+            finishImport();
+            statusLabel.setText("Import failed");
+            Throwable failure = task.getException();
             showAlert(Alert.AlertType.ERROR, "Import Error",
-                    "Failed to import tax file", e.getMessage());
-            e.printStackTrace();
-        }
+                    "Failed to import tax file", failure.getMessage());
+            failure.printStackTrace();
+        });
+
+        importTask = task;
+        task.messageProperty().addListener((observable, previous, message) -> {
+            // a cancelled task can still be reporting
+            if (!task.isDone()) {
+                statusLabel.setText(message);
+            }
+        });
+        importButton.setDisable(true);
+        cancelImportButton.setVisible(true);
+        operationButtons.setDisable(true);
+        transactionTable.setEditable(false);
+
+        // the current file gets its journaled edits first, the task reads them when it is that file again
+        closeJournal(() -> {
+            Thread thread = new Thread(task, "transaction-import");
+            thread.setDaemon(true);
+            thread.start();
+        });
     }
 
-    private void updateTransactionTable() {
-        ObservableList<TransactionRecord> data =
-                FXCollections.observableArrayList(taxProcessor.getTransactions());
-        transactionTable.setItems(data);
-        transactionTable.refresh();
+    // back to the processor's records with editing on
+    private void finishImport() {
+        importTask = null;
+        importButton.setDisable(false);
+        cancelImportButton.setVisible(false);
+        operationButtons.setDisable(false);
+        transactionTable.setItems(transactionItems);
+        transactionTable.setEditable(true);
     }
 
+    //Counts and tax come from the processor's running totals, nothing goes over the records
     private void updateSummaryLabels() {
-        int[] counts = TransactionImporter.getRecordCounts(taxProcessor.getTransactions());
+        int[] counts = taxProcessor.getRecordCounts();
         summaryTotalLabel.setText("Total Records: " + counts[0]);
         summaryValidLabel.setText("Valid Records: " + counts[1]);
         summaryInvalidLabel.setText("Invalid Records: " + counts[2]);
+
+        // at the rate being typed, the calculated rate while it isn't a number
+        BigDecimal taxRate = taxProcessor.getTaxRate();
+        try {
+            taxRate = new BigDecimal(taxRateField.getText().trim());
+        } catch (NumberFormatException e) {
+            // keeps the processor's rate
+        }
+        estimatedTaxLabel.setText("Estimated Tax: LKR " + taxProcessor.calculateFinalTax(taxRate));
     }
 
     private void editSelectedRecord() {
@@ -455,9 +644,7 @@ public class JavaFXMain extends Application {
         if (selectedRecord != null) {
             int index = transactionTable.getSelectionModel().getSelectedIndex();
             taxProcessor.deleteRecord(index);
-            updateTransactionTable();
-            updateSummaryLabels();
-            saveToFile();
+            saveChange(journal -> journal.recordDelete(index));
             showSuccessDialog("Record Deleted", "The selected record was successfully deleted.");
         } else {
             showAlert(Alert.AlertType.WARNING, "No Selection",
@@ -467,17 +654,13 @@ public class JavaFXMain extends Application {
 
     private void deleteZeroProfitRecords() {
         taxProcessor.deleteZeroProfitRecords();
-        updateTransactionTable();
-        updateSummaryLabels();
-        saveToFile();
+        saveChange(ChangeJournal::recordDeleteZeroProfit);
         showSuccessDialog("Operation Complete", "All records with zero profit have been deleted.");
     }
 
     private void updateRecord(int index, TransactionRecord record) {
         taxProcessor.updateRecord(index, record);
-        updateTransactionTable();
-        updateSummaryLabels();
-        saveToFile();
+        saveChange(journal -> journal.recordUpdate(index, record));
     }
 
     private void calculateTax() {
@@ -557,13 +740,19 @@ public class JavaFXMain extends Application {
         alert.showAndWait();
     }
 
-    // Save to the imported file
-    private void saveToFile() {
-        if (importedFilePath == null) {
+    // Saves an edit by appending it to the journal, the file is rewritten once the journal is long enough.
+    // Without a journal the file is rewritten for every edit.
+    private void saveChange(JournalEntry entry) {
+        if (journal == null) {
+            saveToFile();
             return;
         }
         try {
-            TransactionExporter.exportToCSV(taxProcessor.getTransactions(), importedFilePath);
+            entry.writeTo(journal);
+            if (journal.needsCompaction()) {
+                journal.startCompaction();
+                saveToFile();
+            }
         } catch (IOException e) {
             showAlert(Alert.AlertType.ERROR, "Save Error",
                     "Failed to save tax data", e.getMessage());
@@ -571,6 +760,42 @@ public class JavaFXMain extends Application {
         }
     }
 
+    // Writes the edits only the journal has into the file, other readers of the file don't know the journal.
+    // Runs on the save thread after the saves already requested, then continues with next on this thread.
+    // Until the file is imported again, edits are saved by rewriting it.
+    private void closeJournal(Runnable next) {
+        ChangeJournal closing = journal;
+        journal = null;
+        if (closing == null) {
+            next.run();
+            return;
+        }
+        taxProcessor.compact();
+        List<TransactionRecord> records = SaveService.copyOf(taxProcessor.getTransactions());
+        statusLabel.setText("Saving...");
+        saveService.runAfterPending(() -> closing.compactAndClose(records))
+                .whenComplete((done, failure) -> Platform.runLater(() -> {
+                    if (failure != null) {
+                        // the journal stays, it is replayed on the next import of the file
+                        showAlert(Alert.AlertType.ERROR, "Save Error",
+                                "Failed to write the journaled edits into the file", failure.getMessage());
+                        failure.printStackTrace();
+                    }
+                    next.run();
+                }));
+    }
+
+    // Save to the imported file, written in the background by the save service
+    private void saveToFile() {
+        if (importedFilePath == null) {
+            return;
+        }
+        // deleted records are only marked until here
+        taxProcessor.compact();
+        saveService.save(taxProcessor.getTransactions(), importedFilePath);
+        statusLabel.setText("Saving...");
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
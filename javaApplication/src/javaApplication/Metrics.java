@@ -0,0 +1,214 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//In-process counters and latency histograms of the import, validation, tax and export stages.
+//Off unless the javaApplication.metrics system property is true or setEnabled(true) is called; while off,
+//recording is one volatile read and the instrumented code doesn't read the clock (see startTime()).
+public final class Metrics {
+
+    private static volatile boolean enabled = Boolean.getBoolean("javaApplication.metrics");
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    //The counter with this name, created on first use
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    //The histogram with this name, created on first use
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    //System.nanoTime() for timing with Histogram.recordSince, 0 while disabled
+    public static long startTime() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    //Sets every counter and histogram back to zero
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    //One line per metric sorted by name, "name count=n" for counters and
+    //"name count=n min=.. p50=.. p90=.. p99=.. p999=.. max=.. mean=.." in nanoseconds for histograms
+    public static void dump(Appendable out) {
+        Map<String, String> lines = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            lines.put(counter.getName(), counter.getName() + " count=" + counter.get());
+        }
+        for (Histogram histogram : histograms.values()) {
+            lines.put(histogram.getName(), histogram.toString());
+        }
+        try {
+            for (String line : lines.values()) {
+                out.append(line).append(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+
+        public void add(long value) {
+            if (enabled) {
+                count.add(value);
+            }
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        void reset() {
+            count.reset();
+        }
+    }
+
+    //HDR style histogram of non-negative values: exact below 2^SUB_BUCKET_BITS, above that every power of two
+    //range is split into 2^(SUB_BUCKET_BITS - 1) equal buckets, so a percentile is within 1/64 of the real value
+    public static final class Histogram {
+        static final int SUB_BUCKET_BITS = 7;
+        private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+
+        private final String name;
+        private final AtomicLongArray counts = new AtomicLongArray(bucketOf(Long.MAX_VALUE) + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        static int bucketOf(long value) {
+            int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+            return shift * HALF + (int) (value >>> shift);
+        }
+
+        // largest value that lands in the bucket
+        static long highestValueOf(int bucket) {
+            int shift = Math.max(0, bucket / HALF - 1);
+            long subBucket = bucket - (long) shift * HALF;
+            return ((subBucket + 1) << shift) - 1;
+        }
+
+        //Negative values count as 0
+        public void record(long value) {
+            if (!enabled) {
+                return;
+            }
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            min.accumulateAndGet(value, Math::min);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        //Records the nanoseconds since start, a Metrics.startTime() value; nothing when start is 0
+        public void recordSince(long start) {
+            if (start != 0) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMin() {
+            return getCount() == 0 ? 0 : min.get();
+        }
+
+        public long getMax() {
+            return getCount() == 0 ? 0 : max.get();
+        }
+
+        public double getMean() {
+            long n = getCount();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        //The value below or at which the given percentage (0 to 100) of the recorded values are, 0 when empty
+        public long getPercentile(double percentile) {
+            long n = getCount();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length(); bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(bucket), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int bucket = 0; bucket < counts.length(); bucket++) {
+                counts.set(bucket, 0);
+            }
+            count.reset();
+            sum.reset();
+            min.set(Long.MAX_VALUE);
+            max.set(Long.MIN_VALUE);
+        }
+
+        @Override
+        public String toString() {
+            return name + " count=" + getCount() + " min=" + getMin() + " p50=" + getPercentile(50)
+                    + " p90=" + getPercentile(90) + " p99=" + getPercentile(99) + " p999=" + getPercentile(99.9)
+                    + " max=" + getMax() + " mean=" + Math.round(getMean());
+        }
+    }
+}
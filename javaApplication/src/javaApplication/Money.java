@@ -0,0 +1,266 @@
+package javaApplication;
+
+import java.math.BigDecimal;
+
+//Immutable decimal amount kept as unscaled long + scale. Results have the same value and scale as the
+//BigDecimal operations they replace; when a result doesn't fit a long it is kept as BigDecimal instead.
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0, 0, BigDecimal.ZERO);
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long unscaled;
+    private final int scale;
+    // the value itself when it doesn't fit a long, otherwise a lazily created copy
+    private BigDecimal decimal;
+    private final boolean compact;
+
+    private Money(long unscaled, int scale, BigDecimal decimal) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.decimal = decimal;
+        this.compact = true;
+    }
+
+    private Money(BigDecimal decimal) {
+        this.unscaled = 0;
+        this.scale = decimal.scale();
+        this.decimal = decimal;
+        this.compact = false;
+    }
+
+    public static Money of(long unscaled, int scale) {
+        return new Money(unscaled, scale, null);
+    }
+
+    //The BigDecimal is kept, so toBigDecimal() returns the same instance
+    public static Money of(BigDecimal value) {
+        if (value.precision() <= 18) {
+            return new Money(value.unscaledValue().longValue(), value.scale(), value);
+        }
+        return new Money(value);
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    //Only meaningful when isCompact() is true
+    public long unscaledValue() {
+        return unscaled;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public int signum() {
+        return compact ? Long.signum(unscaled) : decimal.signum();
+    }
+
+    public BigDecimal toBigDecimal() {
+        BigDecimal value = decimal;
+        if (value == null) {
+            value = BigDecimal.valueOf(unscaled, scale);
+            decimal = value;
+        }
+        return value;
+    }
+
+    //this + other, scale is the larger of both like BigDecimal.add
+    public Money add(Money other) {
+        if (compact && other.compact) {
+            try {
+                int resultScale = Math.max(scale, other.scale);
+                return of(Math.addExact(rescale(unscaled, scale, resultScale),
+                        rescale(other.unscaled, other.scale, resultScale)), resultScale);
+            } catch (ArithmeticException e) {
+                // falls through to BigDecimal
+            }
+        }
+        return new Money(toBigDecimal().add(other.toBigDecimal()));
+    }
+
+    //this - other, scale is the larger of both like BigDecimal.subtract
+    public Money subtract(Money other) {
+        if (compact && other.compact) {
+            try {
+                int resultScale = Math.max(scale, other.scale);
+                return of(Math.subtractExact(rescale(unscaled, scale, resultScale),
+                        rescale(other.unscaled, other.scale, resultScale)), resultScale);
+            } catch (ArithmeticException e) {
+                // falls through to BigDecimal
+            }
+        }
+        return new Money(toBigDecimal().subtract(other.toBigDecimal()));
+    }
+
+    //this * quantity, scale unchanged like multiplying by new BigDecimal(quantity)
+    public Money multiply(int quantity) {
+        if (compact) {
+            try {
+                return of(Math.multiplyExact(unscaled, quantity), scale);
+            } catch (ArithmeticException e) {
+                // falls through to BigDecimal
+            }
+        }
+        return new Money(toBigDecimal().multiply(BigDecimal.valueOf(quantity)));
+    }
+
+    //a * quantity - b * quantity, same value and scale as those four operations
+    public static Money productDifference(int quantity, Money a, Money b) {
+        return productDifference(quantity, a, b, null);
+    }
+
+    //a * quantity - b * quantity - c * quantity computed on the longs, so only the result is created;
+    //the BigDecimal operations are the fallback when something doesn't fit a long
+    public static Money productDifference(int quantity, Money a, Money b, Money c) {
+        if (a.compact && b.compact && (c == null || c.compact)) {
+            try {
+                int resultScale = c == null ? Math.max(a.scale, b.scale)
+                        : Math.max(Math.max(a.scale, b.scale), c.scale);
+                long difference = Math.subtractExact(rescale(a.unscaled, a.scale, resultScale),
+                        rescale(b.unscaled, b.scale, resultScale));
+                if (c != null) {
+                    difference = Math.subtractExact(difference, rescale(c.unscaled, c.scale, resultScale));
+                }
+                return of(Math.multiplyExact(difference, quantity), resultScale);
+            } catch (ArithmeticException e) {
+                // falls through to BigDecimal
+            }
+        }
+        BigDecimal multiplier = BigDecimal.valueOf(quantity);
+        BigDecimal result = a.toBigDecimal().multiply(multiplier).subtract(b.toBigDecimal().multiply(multiplier));
+        if (c != null) {
+            result = result.subtract(c.toBigDecimal().multiply(multiplier));
+        }
+        return of(result);
+    }
+
+    public Money abs() {
+        if (signum() >= 0) {
+            return this;
+        }
+        if (compact && unscaled != Long.MIN_VALUE) {
+            return of(-unscaled, scale);
+        }
+        return new Money(toBigDecimal().abs());
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (compact && other.compact) {
+            try {
+                int commonScale = Math.max(scale, other.scale);
+                return Long.compare(rescale(unscaled, scale, commonScale),
+                        rescale(other.unscaled, other.scale, commonScale));
+            } catch (ArithmeticException e) {
+                // falls through to BigDecimal
+            }
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    //Same as BigDecimal.equals: value and scale have to match
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        if (scale != other.scale) {
+            return false;
+        }
+        if (compact && other.compact) {
+            return unscaled == other.unscaled;
+        }
+        return toBigDecimal().equals(other.toBigDecimal());
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+    // exact value * 10^(toScale - fromScale), throws ArithmeticException when it doesn't fit a long
+    static long rescale(long value, int fromScale, int toScale) {
+        long shift = (long) toScale - fromScale;
+        if (shift == 0) {
+            return value;
+        }
+        if (shift < 0 || shift >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Scale difference out of range");
+        }
+        return Math.multiplyExact(value, POWERS_OF_TEN[(int) shift]);
+    }
+
+    //Mutable running total for summing many amounts without creating an object per step.
+    //Starts like BigDecimal.ZERO, so the total has the largest scale that was added (at least 0).
+    public static final class Sum {
+        private long unscaled;
+        private int scale;
+        private BigDecimal overflow;
+
+        public void add(Money value) {
+            if (overflow == null && value.compact) {
+                add(value.unscaled, value.scale);
+            } else {
+                addDecimal(value.toBigDecimal());
+            }
+        }
+
+        public void subtract(Money value) {
+            if (overflow == null && value.compact && value.unscaled != Long.MIN_VALUE) {
+                add(-value.unscaled, value.scale);
+            } else {
+                addDecimal(value.toBigDecimal().negate());
+            }
+        }
+
+        public void add(long value, int valueScale) {
+            if (overflow == null) {
+                try {
+                    long total = unscaled;
+                    int totalScale = scale;
+                    if (valueScale > totalScale) {
+                        total = rescale(total, totalScale, valueScale);
+                        totalScale = valueScale;
+                    }
+                    unscaled = Math.addExact(total, rescale(value, valueScale, totalScale));
+                    scale = totalScale;
+                    return;
+                } catch (ArithmeticException e) {
+                    // falls through to BigDecimal
+                }
+            }
+            addDecimal(BigDecimal.valueOf(value, valueScale));
+        }
+
+        private void addDecimal(BigDecimal value) {
+            if (overflow == null) {
+                overflow = BigDecimal.valueOf(unscaled, scale);
+            }
+            overflow = overflow.add(value);
+        }
+
+        public Money total() {
+            return overflow != null ? new Money(overflow) : of(unscaled, scale);
+        }
+    }
+}
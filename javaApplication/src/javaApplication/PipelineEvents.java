@@ -0,0 +1,154 @@
+package javaApplication;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//The pipeline's Flight Recorder events, only used once PipelineMetrics.flightRecorderRunning() is true.
+//The events are handed around as Event so that the recorders don't load these classes.
+final class PipelineEvents {
+
+    private PipelineEvents() {
+    }
+
+    static Event beginImport(String path, String method) {
+        ImportEvent event = new ImportEvent();
+        event.path = path;
+        event.method = method;
+        event.begin();
+        return event;
+    }
+
+    static void commitImport(Event event, long bytes, long rows, long invalidRows) {
+        ImportEvent importEvent = (ImportEvent) event;
+        importEvent.bytes = bytes;
+        importEvent.rows = rows;
+        importEvent.invalidRows = invalidRows;
+        importEvent.commit();
+    }
+
+    static void commitValidation(String path, long records, long checksumFailures, long itemCodeFailures,
+                                 long salePriceFailures) {
+        ValidationEvent event = new ValidationEvent();
+        event.path = path;
+        event.records = records;
+        event.checksumFailures = checksumFailures;
+        event.itemCodeFailures = itemCodeFailures;
+        event.salePriceFailures = salePriceFailures;
+        event.commit();
+    }
+
+    static Event beginExport(String path, String method) {
+        ExportEvent event = new ExportEvent();
+        event.path = path;
+        event.method = method;
+        event.begin();
+        return event;
+    }
+
+    static void commitExport(Event event, long rows, long bytes) {
+        ExportEvent exportEvent = (ExportEvent) event;
+        exportEvent.rows = rows;
+        exportEvent.bytes = bytes;
+        exportEvent.commit();
+    }
+
+    static Event beginTaxCalculation(String method) {
+        TaxCalculationEvent event = new TaxCalculationEvent();
+        event.method = method;
+        event.begin();
+        return event;
+    }
+
+    static void commitTaxCalculation(Event event, long records, String taxRate) {
+        TaxCalculationEvent taxEvent = (TaxCalculationEvent) event;
+        taxEvent.records = records;
+        taxEvent.taxRate = taxRate;
+        taxEvent.commit();
+    }
+
+    @Name("javaApplication.Import")
+    @Label("Transaction Import")
+    @Description("A tax file imported into transaction records")
+    @Category({"Tax Application", "Pipeline"})
+    @StackTrace(false)
+    static class ImportEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Method")
+        String method;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Invalid Rows")
+        long invalidRows;
+    }
+
+    @Name("javaApplication.Validation")
+    @Label("Validation Failures")
+    @Description("Records of one import that failed each validation rule")
+    @Category({"Tax Application", "Pipeline"})
+    @StackTrace(false)
+    static class ValidationEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Records")
+        long records;
+
+        @Label("Checksum Failures")
+        long checksumFailures;
+
+        @Label("Item Code Failures")
+        long itemCodeFailures;
+
+        @Label("Sale Price Failures")
+        long salePriceFailures;
+    }
+
+    @Name("javaApplication.TaxCalculation")
+    @Label("Tax Calculation")
+    @Description("A final tax calculation")
+    @Category({"Tax Application", "Pipeline"})
+    @StackTrace(false)
+    static class TaxCalculationEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Records")
+        long records;
+
+        @Label("Tax Rate")
+        String taxRate;
+    }
+
+    @Name("javaApplication.Export")
+    @Label("Transaction Export")
+    @Description("Transaction records written to a file")
+    @Category({"Tax Application", "Pipeline"})
+    @StackTrace(false)
+    static class ExportEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Method")
+        String method;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Rows")
+        long rows;
+    }
+}
@@ -0,0 +1,195 @@
+package javaApplication;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//The metrics and JFR events (PipelineEvents) of the pipeline stages. Events are only created once the flight
+//recorder is running (jcmd <pid> JFR.start, or -XX:StartFlightRecording) and committed while a recording has
+//them enabled.
+final class PipelineMetrics {
+
+    static final Metrics.Counter IMPORT_FILES = Metrics.counter("import.files");
+    static final Metrics.Counter IMPORT_ROWS = Metrics.counter("import.rows");
+    static final Metrics.Counter IMPORT_BYTES = Metrics.counter("import.bytes");
+    static final Metrics.Histogram IMPORT_TIME = Metrics.histogram("import.time");
+    static final Metrics.Counter CHECKSUM_FAILURES = Metrics.counter("validation.failures.checksum");
+    static final Metrics.Counter ITEM_CODE_FAILURES = Metrics.counter("validation.failures.itemCode");
+    static final Metrics.Counter SALE_PRICE_FAILURES = Metrics.counter("validation.failures.salePrice");
+    static final Metrics.Histogram TAX_TIME = Metrics.histogram("tax.time");
+    static final Metrics.Counter EXPORT_FILES = Metrics.counter("export.files");
+    static final Metrics.Counter EXPORT_ROWS = Metrics.counter("export.rows");
+    static final Metrics.Counter EXPORT_BYTES = Metrics.counter("export.bytes");
+    static final Metrics.Histogram EXPORT_TIME = Metrics.histogram("export.time");
+
+    private PipelineMetrics() {
+    }
+
+    static void validationFailed(TransactionValidator.Rule rule) {
+        switch (rule) {
+            case CHECKSUM:
+                CHECKSUM_FAILURES.increment();
+                break;
+            case ITEM_CODE:
+                ITEM_CODE_FAILURES.increment();
+                break;
+            default:
+                SALE_PRICE_FAILURES.increment();
+                break;
+        }
+    }
+
+    //Whether events can be recorded. Loading the event classes sets up JFR's instrumentation, a few hundred
+    //milliseconds that a short batch run shouldn't pay when nothing records them
+    static boolean flightRecorderRunning() {
+        return FlightRecorder.isInitialized();
+    }
+
+    // 0 when the size can't be read, the event and counters are not worth failing the import or export for
+    static long fileSize(String filePath) {
+        try {
+            return Files.size(Paths.get(filePath));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    //Times one import, the records are counted as they are parsed
+    static final class ImportRecorder {
+        private final long start = Metrics.startTime();
+        private final String filePath;
+        private final Event event;
+        // failed rules are only looked up for the event
+        private final boolean countRules;
+        private long rows;
+        private long invalidRows;
+        private long checksumFailures;
+        private long itemCodeFailures;
+        private long salePriceFailures;
+
+        ImportRecorder(String filePath, String method) {
+            this.filePath = filePath;
+            event = flightRecorderRunning() ? PipelineEvents.beginImport(filePath, method) : null;
+            countRules = event != null && event.isEnabled();
+        }
+
+        void record(TransactionRecord record) {
+            rows++;
+            if (!record.isValid()) {
+                invalidRows++;
+                if (countRules) {
+                    switch (TransactionValidator.failedRule(record)) {
+                        case CHECKSUM:
+                            checksumFailures++;
+                            break;
+                        case ITEM_CODE:
+                            itemCodeFailures++;
+                            break;
+                        default:
+                            salePriceFailures++;
+                            break;
+                    }
+                }
+            }
+        }
+
+        //Whether finish() records anything, the metrics are enabled or a recording has the event enabled
+        boolean isRecording() {
+            return start != 0 || (event != null && event.isEnabled());
+        }
+
+        //Counts records that were parsed without record(), nothing when not recording
+        void recordAll(Iterable<TransactionRecord> records) {
+            if (!isRecording()) {
+                return;
+            }
+            for (TransactionRecord record : records) {
+                record(record);
+            }
+        }
+
+        //For imports that count the rows themselves, failed rules are not in the event then
+        void setRows(long rows, long invalidRows) {
+            this.rows = rows;
+            this.invalidRows = invalidRows;
+        }
+
+        void finish() {
+            boolean commit = false;
+            if (event != null) {
+                event.end();
+                commit = event.shouldCommit();
+            }
+            if (start == 0 && !commit) {
+                return;
+            }
+            long bytes = fileSize(filePath);
+            IMPORT_FILES.increment();
+            IMPORT_ROWS.add(rows);
+            IMPORT_BYTES.add(bytes);
+            IMPORT_TIME.recordSince(start);
+            if (commit) {
+                PipelineEvents.commitImport(event, bytes, rows, invalidRows);
+                if (countRules) {
+                    PipelineEvents.commitValidation(filePath, rows, checksumFailures, itemCodeFailures,
+                            salePriceFailures);
+                }
+            }
+        }
+    }
+
+    //Times one export
+    static final class ExportRecorder {
+        private final long start = Metrics.startTime();
+        private final String filePath;
+        private final Event event;
+
+        ExportRecorder(String filePath, String method) {
+            this.filePath = filePath;
+            event = flightRecorderRunning() ? PipelineEvents.beginExport(filePath, method) : null;
+        }
+
+        void finish(long rows) {
+            boolean commit = false;
+            if (event != null) {
+                event.end();
+                commit = event.shouldCommit();
+            }
+            if (start == 0 && !commit) {
+                return;
+            }
+            long bytes = fileSize(filePath);
+            EXPORT_FILES.increment();
+            EXPORT_ROWS.add(rows);
+            EXPORT_BYTES.add(bytes);
+            EXPORT_TIME.recordSince(start);
+            if (commit) {
+                PipelineEvents.commitExport(event, rows, bytes);
+            }
+        }
+    }
+
+    //Times one final tax calculation
+    static final class TaxRecorder {
+        private final long start = Metrics.startTime();
+        private final Event event;
+
+        TaxRecorder(String method) {
+            event = flightRecorderRunning() ? PipelineEvents.beginTaxCalculation(method) : null;
+        }
+
+        void finish(long records, BigDecimal taxRate) {
+            TAX_TIME.recordSince(start);
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    PipelineEvents.commitTaxCalculation(event, records, taxRate.toString());
+                }
+            }
+        }
+    }
+}
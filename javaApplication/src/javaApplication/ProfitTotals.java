@@ -0,0 +1,145 @@
+package javaApplication;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Running totals of the valid records' profits and losses. Records are added and removed as the
+//transactions change, so the final tax is calculated without going over the records again.
+final class ProfitTotals {
+
+    private final Total profit = new Total();
+    private final Total loss = new Total();
+
+    void add(TransactionRecord record) {
+        if (record.isValid()) {
+            Money recordProfit = record.getProfitMoney();
+            if (recordProfit.signum() > 0) {
+                profit.add(recordProfit);
+            } else {
+                loss.add(recordProfit.abs());
+            }
+        }
+    }
+
+    void remove(TransactionRecord record) {
+        if (record.isValid()) {
+            Money recordProfit = record.getProfitMoney();
+            if (recordProfit.signum() > 0) {
+                profit.remove(recordProfit);
+            } else {
+                loss.remove(recordProfit.abs());
+            }
+        }
+    }
+
+    void clear() {
+        profit.clear();
+        loss.clear();
+    }
+
+    BigDecimal getTotalProfit() {
+        return profit.total();
+    }
+
+    BigDecimal getTotalLoss() {
+        return loss.total();
+    }
+
+    BigDecimal calculateFinalTax(BigDecimal taxRate) {
+        return calculateFinalTax(profit.total(), loss.total(), taxRate);
+    }
+
+    //Tax on the profit less the loss, for totals kept elsewhere
+    static BigDecimal calculateFinalTax(BigDecimal totalProfit, BigDecimal totalLoss, BigDecimal taxRate) {
+        BigDecimal taxableAmount = totalProfit.subtract(totalLoss);
+        if (taxableAmount.compareTo(BigDecimal.ZERO) < 0) {
+            taxableAmount = BigDecimal.ZERO;  // Can't have negative tax
+        }
+
+        return taxableAmount.multiply(taxRate.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
+    }
+
+    //Adds the amounts of the other totals, the result is the same as adding its records one by one
+    void addAll(ProfitTotals other) {
+        profit.addAll(other.profit);
+        loss.addAll(other.loss);
+    }
+
+    // Sum that also supports removing, total() has the same value and scale as adding up
+    // the current amounts from BigDecimal.ZERO
+    private static final class Total {
+        // scales up to this are counted in an array, larger ones in the map
+        private static final int MAX_ARRAY_SCALE = 18;
+
+        private Money.Sum sum = new Money.Sum();
+        private int count;
+        // how many amounts there are per positive scale, the largest one is the scale of the total
+        private final int[] scaleCounts = new int[MAX_ARRAY_SCALE + 1];
+        private final TreeMap<Integer, int[]> largeScaleCounts = new TreeMap<>();
+
+        void add(Money amount) {
+            sum.add(amount);
+            count++;
+            countScale(amount.scale(), 1);
+        }
+
+        void remove(Money amount) {
+            if (--count == 0) {
+                // back to an exact zero, also drops a BigDecimal fallback
+                clear();
+                return;
+            }
+            sum.subtract(amount);
+            countScale(amount.scale(), -1);
+        }
+
+        void addAll(Total other) {
+            if (other.count == 0) {
+                return;
+            }
+            sum.add(other.sum.total());
+            count += other.count;
+            for (int scale = 1; scale <= MAX_ARRAY_SCALE; scale++) {
+                scaleCounts[scale] += other.scaleCounts[scale];
+            }
+            for (Map.Entry<Integer, int[]> entry : other.largeScaleCounts.entrySet()) {
+                countScale(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+
+        private void countScale(int scale, int change) {
+            if (scale <= 0) {
+                // the total never has a scale below 0
+            } else if (scale <= MAX_ARRAY_SCALE) {
+                scaleCounts[scale] += change;
+            } else {
+                int[] scaleCount = largeScaleCounts.computeIfAbsent(scale, key -> new int[1]);
+                scaleCount[0] += change;
+                if (scaleCount[0] == 0) {
+                    largeScaleCounts.remove(scale);
+                }
+            }
+        }
+
+        void clear() {
+            sum = new Money.Sum();
+            count = 0;
+            Arrays.fill(scaleCounts, 0);
+            largeScaleCounts.clear();
+        }
+
+        BigDecimal total() {
+            int scale = largeScaleCounts.isEmpty() ? 0 : largeScaleCounts.lastKey();
+            for (int i = MAX_ARRAY_SCALE; i > 0 && scale == 0; i--) {
+                if (scaleCounts[i] > 0) {
+                    scale = i;
+                }
+            }
+            // the sum can still have the scale of a removed amount, the value fits the smaller scale exactly
+            return sum.total().toBigDecimal().setScale(scale, RoundingMode.UNNECESSARY);
+        }
+    }
+}
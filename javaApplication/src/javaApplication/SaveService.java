@@ -0,0 +1,126 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Saves transactions to their file on a background thread. Saves requested within the delay, or while
+//a write is running, are coalesced so only the latest records per file are written. Files are replaced
+//atomically (TransactionExporter.exportToCSVAtomically).
+public class SaveService implements AutoCloseable {
+
+    public static final long DEFAULT_DELAY_MILLIS = 250;
+
+    //Work for the save thread, done in order with the saves
+    public interface Job {
+        void run() throws IOException;
+    }
+
+    //Called on the save thread after each write
+    public interface Listener {
+        void saved(String filePath, int recordCount);
+
+        void failed(String filePath, IOException e);
+    }
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "transaction-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Listener listener;
+    private final long delayMillis;
+    // latest records per file that still have to be written, guarded by itself
+    private final Map<String, List<TransactionRecord>> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    public SaveService(Listener listener) {
+        this(listener, DEFAULT_DELAY_MILLIS);
+    }
+
+    public SaveService(Listener listener, long delayMillis) {
+        this.listener = listener;
+        this.delayMillis = delayMillis;
+    }
+
+    //Queues a save and returns at once. The records are copied here, on the caller's thread, so the list
+    //and the records can be edited again right away; the file gets them as they are now.
+    public void save(List<TransactionRecord> transactions, String filePath) {
+        List<TransactionRecord> copy = copyOf(transactions);
+        synchronized (pending) {
+            pending.put(filePath, copy);
+            if (!scheduled) {
+                scheduled = true;
+                executor.schedule(this::writePending, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    //Writes what is pending now, then runs the job on the save thread and returns at once. The future
+    //completes once the job is done, exceptionally with what it threw.
+    public CompletableFuture<Void> runAfterPending(Job job) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        executor.execute(() -> {
+            writePending();
+            try {
+                job.run();
+                done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    //Copies of the records for the save thread, the originals can be edited again right away
+    static List<TransactionRecord> copyOf(List<TransactionRecord> transactions) {
+        List<TransactionRecord> copy = new ArrayList<>(transactions.size());
+        for (TransactionRecord record : transactions) {
+            copy.add(record.copy());
+        }
+        return copy;
+    }
+
+    //Writes everything that is pending now and waits for it
+    public void flush() {
+        try {
+            executor.submit(this::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Save failed", e.getCause());
+        }
+    }
+
+    //Writes what is still pending and stops the save thread
+    @Override
+    public void close() {
+        flush();
+        executor.shutdownNow();
+    }
+
+    private void writePending() {
+        Map<String, List<TransactionRecord>> batch;
+        synchronized (pending) {
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            scheduled = false;
+        }
+
+        for (Map.Entry<String, List<TransactionRecord>> save : batch.entrySet()) {
+            try {
+                TransactionExporter.exportToCSVAtomically(save.getValue(), save.getKey());
+                listener.saved(save.getKey(), save.getValue().size());
+            } catch (IOException e) {
+                listener.failed(save.getKey(), e);
+            }
+        }
+    }
+}
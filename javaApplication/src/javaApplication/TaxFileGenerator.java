@@ -0,0 +1,339 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//Synthetic tax files in the format of pos.py's generate_tax_file: the same header, "YYYYMMDD_NNNN" bill
+//numbers, prices with 2 decimals, line total = (sale price - discount) * quantity, the checksum of the
+//first 7 fields and csv.writer's \r\n line endings.
+//The file only depends on the seed and the settings: rows are generated in chunks that each have their own
+//random sequence, so any pool (or none) writes the same bytes.
+//
+//  java javaApplication.TaxFileGenerator <file> <rows> [seed] [invalid ratio] [zero profit ratio] [item count]
+public class TaxFileGenerator {
+
+    // rows generated by one task, and with their own random sequence
+    static final int CHUNK_ROWS = 64 * 1024;
+    // bills have this many items, a day has at most MAX_BILLS_PER_DAY bills (4 digit bill numbers)
+    static final int ITEMS_PER_BILL = 4;
+    static final int MAX_BILLS_PER_DAY = 9999;
+
+    private static final String HEADER =
+            "Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,Checksum\r\n";
+    // mixes the chunk number into the seed
+    private static final long CHUNK_SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private long rowCount = 1000;
+    private double invalidRatio = 0.05;
+    private double zeroProfitRatio = 0.1;
+    private double lossRatio = 0.05;
+    private int itemCount = 1000;
+    private LocalDate startDate = LocalDate.of(2024, 1, 1);
+
+    public TaxFileGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Row count can't be negative: " + rowCount);
+        }
+        this.rowCount = rowCount;
+    }
+
+    public double getInvalidRatio() {
+        return invalidRatio;
+    }
+
+    //Share of rows failing one of the validation rules: item code, checksum or a negative sale price
+    public void setInvalidRatio(double invalidRatio) {
+        this.invalidRatio = checkRatio(invalidRatio);
+    }
+
+    public double getZeroProfitRatio() {
+        return zeroProfitRatio;
+    }
+
+    //Share of rows with sale price = internal price + discount
+    public void setZeroProfitRatio(double zeroProfitRatio) {
+        this.zeroProfitRatio = checkRatio(zeroProfitRatio);
+    }
+
+    public double getLossRatio() {
+        return lossRatio;
+    }
+
+    //Share of rows sold below internal price + discount
+    public void setLossRatio(double lossRatio) {
+        this.lossRatio = checkRatio(lossRatio);
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    //Distinct item codes in the file
+    public void setItemCount(int itemCount) {
+        if (itemCount < 1) {
+            throw new IllegalArgumentException("Item count must be at least 1: " + itemCount);
+        }
+        this.itemCount = itemCount;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    //Date of the first bill, the next day starts after MAX_BILLS_PER_DAY bills
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    private static double checkRatio(double ratio) {
+        if (!(ratio >= 0 && ratio <= 1)) {
+            throw new IllegalArgumentException("Ratio must be between 0 and 1: " + ratio);
+        }
+        return ratio;
+    }
+
+    public void generate(String filePath) throws IOException {
+        generate(filePath, ForkJoinPool.commonPool());
+    }
+
+    //Chunks are generated on the pool, one round at a time, and written in order with a gathering write
+    //while the next round is generated (like TransactionExporter.exportToCSVParallel)
+    public void generate(String filePath, ForkJoinPool pool) throws IOException {
+        if (invalidRatio + zeroProfitRatio + lossRatio > 1) {
+            throw new IllegalArgumentException("Invalid, zero profit and loss ratios add up to more than 1");
+        }
+        Charset charset = Charset.defaultCharset();
+        Settings settings = new Settings(this);
+        long chunkCount = (rowCount + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        int roundSize = Math.max(1, pool.getParallelism() * 2);
+
+        try (FileChannel channel = TransactionExporter.openChannel(filePath)) {
+            TransactionExporter.writeFully(channel, ByteBuffer.wrap(HEADER.getBytes(charset)));
+
+            ChunkTask round = chunkCount > 0
+                    ? new ChunkTask(settings, charset, 0, Math.min(roundSize, chunkCount)) : null;
+            if (round != null) {
+                pool.execute(round);
+            }
+            while (round != null) {
+                ChunkTask current = round;
+                try {
+                    current.join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                round = null;
+                if (current.to < chunkCount) {
+                    round = new ChunkTask(settings, charset, current.to, Math.min(current.to + roundSize, chunkCount));
+                    pool.execute(round);
+                }
+                TransactionExporter.writeFully(channel, current.chunks);
+            }
+        }
+    }
+
+    //Copy of the settings for the tasks, with the item codes and their checksums
+    private static class Settings {
+        final long seed;
+        final long rowCount;
+        final double invalidRatio;
+        final double zeroProfitRatio;
+        final double lossRatio;
+        final LocalDate startDate;
+        final String[] itemCodes;
+        final int[] itemChecksums;
+
+        Settings(TaxFileGenerator generator) {
+            seed = generator.seed;
+            rowCount = generator.rowCount;
+            invalidRatio = generator.invalidRatio;
+            zeroProfitRatio = generator.zeroProfitRatio;
+            lossRatio = generator.lossRatio;
+            startDate = generator.startDate;
+            itemCodes = new String[generator.itemCount];
+            itemChecksums = new int[itemCodes.length];
+            for (int i = 0; i < itemCodes.length; i++) {
+                itemCodes[i] = "ITEM" + i;
+                itemChecksums[i] = TransactionValidator.textChecksum(itemCodes[i]);
+            }
+        }
+    }
+
+    //Generates the chunks [from, to), splitting the range in halves down to single chunks
+    @SuppressWarnings("serial")
+    private static class ChunkTask extends RecursiveAction {
+        private final Settings settings;
+        private final Charset charset;
+        private final long from;
+        private final long to;
+        // per chunk of the range, shared with the subtasks
+        private final ByteBuffer[] chunks;
+        private final long offset;
+
+        ChunkTask(Settings settings, Charset charset, long from, long to) {
+            this(settings, charset, from, to, new ByteBuffer[(int) (to - from)], from);
+        }
+
+        private ChunkTask(Settings settings, Charset charset, long from, long to, ByteBuffer[] chunks, long offset) {
+            this.settings = settings;
+            this.charset = charset;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(settings, charset, from, middle, chunks, offset),
+                        new ChunkTask(settings, charset, middle, to, chunks, offset));
+                return;
+            }
+            try {
+                ByteBuffer chunk = generateChunk(settings, from);
+                if (!TransactionImporter.isAsciiCompatible(charset)) {
+                    // the generated text is ASCII only
+                    chunk = ByteBuffer.wrap(StandardCharsets.US_ASCII.decode(chunk).toString().getBytes(charset));
+                }
+                chunks[(int) (from - offset)] = chunk;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static ByteBuffer generateChunk(Settings settings, long chunk) throws IOException {
+        SplittableRandom random = new SplittableRandom(settings.seed + chunk * CHUNK_SEED_STEP);
+        long start = chunk * CHUNK_ROWS;
+        long end = Math.min(start + CHUNK_ROWS, settings.rowCount);
+        // about 56 bytes per row, grows when needed
+        CsvRecordWriter writer = new CsvRecordWriter(StandardCharsets.US_ASCII, (int) (end - start) * 64);
+        DateTimeFormatter dateFormat = DateTimeFormatter.BASIC_ISO_DATE;
+
+        long billIndex = -1;
+        String datePrefix = null;
+        String billNumber = null;
+        int billChecksum = 0;
+        for (long row = start; row < end; row++) {
+            if (row / ITEMS_PER_BILL != billIndex) {
+                billIndex = row / ITEMS_PER_BILL;
+                if (datePrefix == null || billIndex % MAX_BILLS_PER_DAY == 0) {
+                    datePrefix = settings.startDate.plusDays(billIndex / MAX_BILLS_PER_DAY).format(dateFormat) + "_";
+                }
+                String sequence = Long.toString(billIndex % MAX_BILLS_PER_DAY + 1);
+                billNumber = datePrefix + "0000".substring(sequence.length()) + sequence;
+                billChecksum = TransactionValidator.textChecksum(billNumber);
+            }
+
+            int item = random.nextInt(settings.itemCodes.length);
+            String itemCode = settings.itemCodes[item];
+            int itemChecksum = settings.itemChecksums[item];
+            // prices in cents
+            long internalPrice = 100 + random.nextInt(99_900);
+            long discount = random.nextBoolean() ? 0 : 1 + random.nextInt((int) (internalPrice / 10));
+            int quantity = 1 + random.nextInt(10);
+            long salePrice;
+            double kind = random.nextDouble();
+            boolean invalid = kind < settings.invalidRatio;
+            kind -= settings.invalidRatio;
+            if (!invalid && kind < settings.zeroProfitRatio) {
+                salePrice = internalPrice + discount;
+            } else if (!invalid && kind - settings.zeroProfitRatio < settings.lossRatio) {
+                salePrice = internalPrice + discount - 1 - random.nextInt((int) (internalPrice / 2));
+            } else {
+                salePrice = internalPrice + discount + 1 + random.nextInt((int) (internalPrice / 2));
+            }
+
+            int checksumError = 0;
+            if (invalid) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        // rule 2, a character other than letters, digits and '_'
+                        itemCode = itemCode.substring(0, 4) + "-" + itemCode.substring(4);
+                        break;
+                    case 1:
+                        // rule 1, a checksum that doesn't match the line
+                        checksumError = 1 + random.nextInt(3);
+                        break;
+                    default:
+                        // rule 3, negative sale price
+                        salePrice = -salePrice;
+                        break;
+                }
+            }
+            long lineTotal = (salePrice - discount) * quantity;
+            int checksum = billChecksum + itemChecksum
+                    + TransactionValidator.decimalChecksum(internalPrice, 2)
+                    + TransactionValidator.decimalChecksum(discount, 2)
+                    + TransactionValidator.decimalChecksum(salePrice, 2)
+                    + TransactionValidator.digitCount(quantity)
+                    + TransactionValidator.decimalChecksum(lineTotal, 2);
+
+            writer.putText(billNumber);
+            writer.putByte(',');
+            writer.putText(itemCode);
+            writer.putByte(',');
+            writer.putDecimal(internalPrice, 2);
+            writer.putByte(',');
+            writer.putDecimal(discount, 2);
+            writer.putByte(',');
+            writer.putDecimal(salePrice, 2);
+            writer.putByte(',');
+            writer.putLong(quantity);
+            writer.putByte(',');
+            writer.putDecimal(lineTotal, 2);
+            writer.putByte(',');
+            writer.putLong(checksum + checksumError);
+            writer.putByte('\r');
+            writer.putByte('\n');
+        }
+        return writer.bytes();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TaxFileGenerator <file> <rows> [seed] [invalid ratio] [zero profit ratio]"
+                    + " [item count]");
+            System.exit(2);
+        }
+        TaxFileGenerator generator = new TaxFileGenerator(args.length > 2 ? Long.parseLong(args[2]) : 1);
+        generator.setRowCount(Long.parseLong(args[1]));
+        if (args.length > 3) {
+            generator.setInvalidRatio(Double.parseDouble(args[3]));
+        }
+        if (args.length > 4) {
+            generator.setZeroProfitRatio(Double.parseDouble(args[4]));
+        }
+        if (args.length > 5) {
+            generator.setItemCount(Integer.parseInt(args[5]));
+        }
+        long start = System.nanoTime();
+        generator.generate(args[0]);
+        System.out.printf("%d rows written to %s in %d ms%n", generator.getRowCount(), args[0],
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -1,39 +1,148 @@
 package javaApplication;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 //tax calculation
 public class TaxProcessor {
+    // slots, deleted records stay in place (marked in tombstones) until the next compact()
     private List<TransactionRecord> transactions;
+    private final TombstoneIndex tombstones = new TombstoneIndex();
     private BigDecimal taxRate;
+    // kept up to date by the methods below and by the records themselves when their profit or validity
+    // changes, the list itself is only changed through this class
+    private final ProfitTotals totals = new ProfitTotals();
+    // bit per slot, set for valid records that are not deleted
+    private final BitSet valid = new BitSet();
+    // set bits in valid
+    private int validCount;
+    // changes on every change of the records, lets the views reuse their last position
+    private int version;
+    private final List<ChangeListener> listeners = new ArrayList<>();
+
+    //Told about every change of the live records, indexes are positions in getTransactions() at the time
+    //of the change. Changes come between changesStarting and changesFinished, a bulk delete is one group.
+    public interface ChangeListener {
+        default void changesStarting() {
+        }
+
+        default void changesFinished() {
+        }
+
+        //setTransactions replaced all records, previous are the live records before it
+        default void recordsReplaced(List<TransactionRecord> previous) {
+        }
+
+        //updateRecord put a record at the index
+        default void recordSet(int index, TransactionRecord previous) {
+        }
+
+        //the record at the index changed its own profit or validity
+        default void recordChanged(int index) {
+        }
+
+        default void recordDeleted(int index, TransactionRecord record) {
+        }
+    }
 
     public TaxProcessor() {
         this.transactions = new ArrayList<>();
         this.taxRate = BigDecimal.ZERO;
     }
 
+    //The records are copied into the processor's own list, the given list isn't changed later
     public void setTransactions(List<TransactionRecord> transactions) {
-        this.transactions = transactions;
+        // the old list isn't changed below, only copied when deleted slots have to be left out
+        List<TransactionRecord> previous = listeners.isEmpty() ? null
+                : tombstones.hasDeleted() ? new ArrayList<>(getTransactions())
+                : Collections.unmodifiableList(this.transactions);
+        for (TransactionRecord record : this.transactions) {
+            detach(record);
+        }
+        this.transactions = new ArrayList<>(transactions);
+        totals.clear();
+        valid.clear();
+        validCount = 0;
+        for (int i = 0; i < this.transactions.size(); i++) {
+            TransactionRecord record = this.transactions.get(i);
+            record.attach(this, i);
+            totals.add(record);
+            setValidBit(i, record.isValid());
+        }
+        tombstones.reset(this.transactions.size());
+        version++;
+        if (previous != null) {
+            fireChangesStarting();
+            for (ChangeListener listener : listeners) {
+                listener.recordsReplaced(previous);
+            }
+            fireChangesFinished();
+        }
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChangesStarting() {
+        for (ChangeListener listener : listeners) {
+            listener.changesStarting();
+        }
+    }
+
+    private void fireChangesFinished() {
+        for (ChangeListener listener : listeners) {
+            listener.changesFinished();
+        }
     }
 
+    //Live read only view without the deleted records
     public List<TransactionRecord> getTransactions() {
-        return transactions;
+        return new RecordView();
     }
 
+    //Live read only view, nothing is copied
     public List<TransactionRecord> getValidTransactions() {
-        return transactions.stream()
-                .filter(TransactionRecord::isValid)
-                .collect(Collectors.toList());
+        return new ValidityView(true);
     }
 
+    //Live read only view, nothing is copied
     public List<TransactionRecord> getInvalidTransactions() {
-        return transactions.stream()
-                .filter(record -> !record.isValid())
-                .collect(Collectors.toList());
+        return new ValidityView(false);
+    }
+
+    public int size() {
+        return tombstones.size();
+    }
+
+    public int getValidCount() {
+        return validCount;
+    }
+
+    public int getInvalidCount() {
+        return size() - getValidCount();
+    }
+
+    //total, valid and invalid record count like TransactionImporter.getRecordCounts, without going over the records
+    public int[] getRecordCounts() {
+        int validRecords = getValidCount();
+        return new int[] {size(), validRecords, size() - validRecords};
     }
 
     public void setTaxRate(BigDecimal taxRate) {
@@ -44,60 +153,340 @@ public class TaxProcessor {
         return taxRate;
     }
 
+    //sum of the valid records' positive profits
+    public BigDecimal getTotalProfit() {
+        return totals.getTotalProfit();
+    }
+
+    //sum of the valid records' losses (zero or negative profits) as a positive amount
+    public BigDecimal getTotalLoss() {
+        return totals.getTotalLoss();
+    }
+
 
     //to update records -Manager
     public void updateRecord(int index, TransactionRecord updatedRecord) {
-        if (index >= 0 && index < transactions.size()) {
+        if (index >= 0 && index < size()) {
             updatedRecord.calculateLineTotal(); // lineTotal
 
             updatedRecord.calculateProfit(); //updated profit
-            //calculating checksum again
-            String transactionLine = updatedRecord.toTransactionLine();
-            int newChecksum = TransactionValidator.calculateChecksum(transactionLine);
+            //calculating checksum again, edited records always use the reconstructed line
+            int newChecksum = TransactionValidator.calculateChecksum(updatedRecord);
             updatedRecord.setOriginalChecksum(newChecksum);
 
             //record validating
-            boolean isValid = TransactionValidator.validateTransaction(updatedRecord);
+            boolean isValid = TransactionValidator.validateTransaction(updatedRecord, newChecksum);
             updatedRecord.setValid(isValid);
 
-            transactions.set(index, updatedRecord);
+            int slot = tombstones.slotOf(index);
+            TransactionRecord previous = transactions.set(slot, updatedRecord);
+            totals.remove(previous);
+            detach(previous);
+            updatedRecord.attach(this, slot);
+            totals.add(updatedRecord);
+            setValidBit(slot, updatedRecord.isValid());
+            version++;
+            if (!listeners.isEmpty()) {
+                fireChangesStarting();
+                for (ChangeListener listener : listeners) {
+                    listener.recordSet(index, previous);
+                }
+                fireChangesFinished();
+            }
         }
     }
 
 
-    //To delete invalid records
+    //To delete invalid records, only marks the record as deleted, compact() removes it from the list
     public void deleteRecord(int index) {
-        if (index >= 0 && index < transactions.size()) {
-            transactions.remove(index);
+        if (index >= 0 && index < size()) {
+            fireChangesStarting();
+            delete(tombstones.slotOf(index));
+            fireChangesFinished();
         }
     }
 
+    //Deletes every record matching the filter, returns how many were deleted
+    public int deleteAll(Predicate<? super TransactionRecord> filter) {
+        int deleted = 0;
+        fireChangesStarting();
+        try {
+            for (int slot = tombstones.nextLive(0); slot < transactions.size(); slot = tombstones.nextLive(slot + 1)) {
+                if (filter.test(transactions.get(slot))) {
+                    delete(slot);
+                    deleted++;
+                }
+            }
+        } finally {
+            fireChangesFinished();
+        }
+        return deleted;
+    }
+
 
     //deleting 0 profit transactions
     public void deleteZeroProfitRecords() {
-        transactions.removeIf(record ->
-                record.getProfit().compareTo(BigDecimal.ZERO) == 0);
+        deleteAll(record -> record.getProfitMoney().signum() == 0);
+    }
+
+    private void delete(int slot) {
+        int index = listeners.isEmpty() ? -1 : tombstones.indexOf(slot);
+        TransactionRecord removed = transactions.get(slot);
+        totals.remove(removed);
+        detach(removed);
+        setValidBit(slot, false);
+        tombstones.delete(slot);
+        version++;
+        for (ChangeListener listener : listeners) {
+            listener.recordDeleted(index, removed);
+        }
+    }
+
+    //Removes the deleted records from the list, done in one pass however many were deleted
+    public void compact() {
+        if (!tombstones.hasDeleted()) {
+            return;
+        }
+        List<TransactionRecord> live = new ArrayList<>(tombstones.size());
+        for (int slot = tombstones.nextLive(0); slot < transactions.size(); slot = tombstones.nextLive(slot + 1)) {
+            TransactionRecord record = transactions.get(slot);
+            record.attach(this, live.size());
+            live.add(record);
+        }
+        transactions = live;
+        valid.clear();
+        validCount = 0;
+        for (int i = 0; i < live.size(); i++) {
+            setValidBit(i, live.get(i).isValid());
+        }
+        tombstones.reset(live.size());
+        version++;
+    }
+
+    private void setValidBit(int slot, boolean value) {
+        if (valid.get(slot) != value) {
+            valid.set(slot, value);
+            validCount += value ? 1 : -1;
+        }
+    }
+
+    private void detach(TransactionRecord record) {
+        if (record.getOwner() == this) {
+            record.attach(null, -1);
+        }
+    }
+
+    // called by a record of this processor before and after its profit or validity changes
+    void recordChanging(TransactionRecord record) {
+        totals.remove(record);
+    }
+
+    void recordChanged(TransactionRecord record) {
+        totals.add(record);
+        setValidBit(record.getIndex(), record.isValid());
+        version++;
+        if (!listeners.isEmpty()) {
+            int index = tombstones.indexOf(record.getIndex());
+            fireChangesStarting();
+            for (ChangeListener listener : listeners) {
+                listener.recordChanged(index);
+            }
+            fireChangesFinished();
+        }
     }
 
-    //final tax
+    //final tax, from the running totals
     public BigDecimal calculateFinalTax() {
-        BigDecimal totalProfit = BigDecimal.ZERO;
-        BigDecimal totalLoss = BigDecimal.ZERO;
+        return calculateFinalTax(taxRate);
+    }
+
+    //final tax at another rate from the running totals, the processor's tax rate stays as it is
+    public BigDecimal calculateFinalTax(BigDecimal taxRate) {
+        PipelineMetrics.TaxRecorder recorder = new PipelineMetrics.TaxRecorder("runningTotals");
+        BigDecimal tax = totals.calculateFinalTax(taxRate);
+        recorder.finish(size(), taxRate);
+        return tax;
+    }
+
+    //final tax of the valid records in the stream, records are not kept so it works on streamed imports
+    public static BigDecimal calculateFinalTax(Stream<TransactionRecord> transactions, BigDecimal taxRate) {
+        PipelineMetrics.TaxRecorder recorder = new PipelineMetrics.TaxRecorder("stream");
+        ProfitTotals totals = new ProfitTotals();
+        long[] count = new long[1];
+        transactions.forEachOrdered(record -> {
+            totals.add(record);
+            count[0]++;
+        });
+        BigDecimal tax = totals.calculateFinalTax(taxRate);
+        recorder.finish(count[0], taxRate);
+        return tax;
+    }
+
+    // records summed by one task before it stops splitting
+    private static final int PARALLEL_PARTITION_SIZE = 16 * 1024;
+
+    public BigDecimal calculateFinalTaxParallel() {
+        return calculateFinalTaxParallel(ForkJoinPool.commonPool());
+    }
+
+    //Recalculates the final tax from the records on the given pool instead of using the running totals
+    public BigDecimal calculateFinalTaxParallel(ForkJoinPool pool) {
+        PipelineMetrics.TaxRecorder recorder = new PipelineMetrics.TaxRecorder("parallel");
+        BigDecimal tax = pool.invoke(new TotalsTask(transactions, tombstones.deleted(), 0, transactions.size()))
+                .calculateFinalTax(taxRate);
+        recorder.finish(size(), taxRate);
+        return tax;
+    }
+
+    //Sums partitions of the records on the pool and combines the partition totals. All sums are exact,
+    //so the result (value and scale) is the same as the sequential calculation for any pool size.
+    public static BigDecimal calculateFinalTaxParallel(List<TransactionRecord> transactions, BigDecimal taxRate,
+                                                       ForkJoinPool pool) {
+        PipelineMetrics.TaxRecorder recorder = new PipelineMetrics.TaxRecorder("parallel");
+        List<TransactionRecord> records = transactions instanceof RandomAccess
+                ? transactions : new ArrayList<>(transactions);
+        BigDecimal tax = pool.invoke(new TotalsTask(records, new BitSet(), 0, records.size()))
+                .calculateFinalTax(taxRate);
+        recorder.finish(records.size(), taxRate);
+        return tax;
+    }
+
+    @SuppressWarnings("serial")
+    private static class TotalsTask extends RecursiveTask<ProfitTotals> {
+        private final List<TransactionRecord> transactions;
+        private final BitSet deleted;
+        private final int from;
+        private final int to;
+
+        TotalsTask(List<TransactionRecord> transactions, BitSet deleted, int from, int to) {
+            this.transactions = transactions;
+            this.deleted = deleted;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ProfitTotals compute() {
+            if (to - from > PARALLEL_PARTITION_SIZE) {
+                int middle = (from + to) >>> 1;
+                TotalsTask left = new TotalsTask(transactions, deleted, from, middle);
+                left.fork();
+                ProfitTotals totals = new TotalsTask(transactions, deleted, middle, to).compute();
+                totals.addAll(left.join());
+                return totals;
+            }
 
-        for (TransactionRecord record : getValidTransactions()) {
-            BigDecimal profit = record.getProfit();
-            if (profit.compareTo(BigDecimal.ZERO) > 0) {
-                totalProfit = totalProfit.add(profit);
+            ProfitTotals totals = new ProfitTotals();
+            for (int i = deleted.nextClearBit(from); i < to; i = deleted.nextClearBit(i + 1)) {
+                totals.add(transactions.get(i));
+            }
+            return totals;
+        }
+    }
+
+    //Records of the slots picked by nextSlot, in slot order
+    private abstract class SlotView extends AbstractList<TransactionRecord> {
+        // last looked up index and its slot, so get() in order doesn't scan from the start each time
+        private int cachedVersion = -1;
+        private int cachedIndex;
+        private int cachedSlot;
+
+        // first slot from the given one that belongs to the view, transactions.size() when there is none
+        abstract int nextSlot(int from);
+
+        @Override
+        public TransactionRecord get(int index) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            int i;
+            int slot;
+            if (cachedVersion == version && cachedIndex <= index) {
+                i = cachedIndex;
+                slot = cachedSlot;
             } else {
-                totalLoss = totalLoss.add(profit.abs());
+                i = 0;
+                slot = nextSlot(0);
             }
+            while (i < index && slot < transactions.size()) {
+                slot = nextSlot(slot + 1);
+                i++;
+            }
+            if (slot >= transactions.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            cachedVersion = version;
+            cachedIndex = index;
+            cachedSlot = slot;
+            return transactions.get(slot);
         }
 
-        BigDecimal taxableAmount = totalProfit.subtract(totalLoss);
-        if (taxableAmount.compareTo(BigDecimal.ZERO) < 0) {
-            taxableAmount = BigDecimal.ZERO;  // Can't have negative tax
+        @Override
+        public Iterator<TransactionRecord> iterator() {
+            return new Iterator<TransactionRecord>() {
+                private int slot = nextSlot(0);
+
+                @Override
+                public boolean hasNext() {
+                    return slot < transactions.size();
+                }
+
+                @Override
+                public TransactionRecord next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    TransactionRecord record = transactions.get(slot);
+                    slot = nextSlot(slot + 1);
+                    return record;
+                }
+            };
+        }
+    }
+
+    //All records that are not deleted
+    private final class RecordView extends SlotView {
+        @Override
+        public int size() {
+            return TaxProcessor.this.size();
         }
 
-        return taxableAmount.multiply(taxRate.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
+        @Override
+        public TransactionRecord get(int index) {
+            return transactions.get(tombstones.slotOf(Objects.checkIndex(index, size())));
+        }
+
+        @Override
+        int nextSlot(int from) {
+            return tombstones.nextLive(from);
+        }
+    }
+
+    //Valid or invalid records, found through the validity bits
+    private final class ValidityView extends SlotView {
+        private final boolean validRecords;
+
+        ValidityView(boolean validRecords) {
+            this.validRecords = validRecords;
+        }
+
+        @Override
+        public int size() {
+            return validRecords ? getValidCount() : getInvalidCount();
+        }
+
+        @Override
+        int nextSlot(int from) {
+            if (validRecords) {
+                int slot = valid.nextSetBit(from);
+                return slot < 0 ? transactions.size() : slot;
+            }
+            // deleted slots have no valid bit either
+            int slot = valid.nextClearBit(from);
+            while (slot < transactions.size() && tombstones.isDeleted(slot)) {
+                slot = valid.nextClearBit(slot + 1);
+            }
+            return Math.min(slot, transactions.size());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package javaApplication;
+
+import java.util.BitSet;
+
+//Marks deleted slots of a list without moving the others. A Fenwick tree over the live slots
+//maps between positions in the list without the deleted slots (index) and positions with them (slot).
+final class TombstoneIndex {
+
+    private final BitSet deleted = new BitSet();
+    // tree[i] = live slots in (i - lowbit(i), i], 1-based
+    private int[] tree = new int[1];
+    private int slots;
+    private int live;
+
+    //All slots live again
+    void reset(int slots) {
+        this.slots = slots;
+        this.live = slots;
+        deleted.clear();
+        if (tree.length < slots + 1) {
+            tree = new int[slots + 1];
+        }
+        for (int i = 1; i <= slots; i++) {
+            tree[i] = i & -i;
+        }
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    int size() {
+        return live;
+    }
+
+    boolean hasDeleted() {
+        return live < slots;
+    }
+
+    boolean isDeleted(int slot) {
+        return deleted.get(slot);
+    }
+
+    BitSet deleted() {
+        return deleted;
+    }
+
+    void delete(int slot) {
+        if (deleted.get(slot)) {
+            return;
+        }
+        deleted.set(slot);
+        live--;
+        for (int i = slot + 1; i <= slots; i += i & -i) {
+            tree[i]--;
+        }
+    }
+
+    //Slot of the index-th live slot
+    int slotOf(int index) {
+        if (live == slots) {
+            return index;
+        }
+        // binary lifting: the largest position whose live prefix count is still <= index
+        int position = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(slots); step > 0; step >>>= 1) {
+            int next = position + step;
+            if (next <= slots && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    //Index of a live slot: the live slots before it
+    int indexOf(int slot) {
+        if (live == slots) {
+            return slot;
+        }
+        int index = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            index += tree[i];
+        }
+        return index;
+    }
+
+    //First live slot from the given one, slots() when there is none
+    int nextLive(int slot) {
+        return Math.min(deleted.nextClearBit(slot), slots);
+    }
+}
@@ -0,0 +1,60 @@
+package javaApplication;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.util.Callback;
+
+import java.util.function.Function;
+
+//Cell value factories and cells of the transaction table. Values are read through the record's getters
+//instead of PropertyValueFactory's reflective lookup, cell text and styles are only rebuilt when the value
+//of a cell changes.
+final class TransactionColumns {
+
+    private TransactionColumns() {
+    }
+
+    static <T> Callback<TableColumn.CellDataFeatures<TransactionRecord, T>, ObservableValue<T>> value(
+            Function<TransactionRecord, T> getter) {
+        return features -> new ReadOnlyObjectWrapper<>(getter.apply(features.getValue()));
+    }
+
+    //Read only cell showing value.toString(), the text is kept while the cell shows the same value
+    static <T> Callback<TableColumn<TransactionRecord, T>, TableCell<TransactionRecord, T>> textCell() {
+        return column -> new TableCell<TransactionRecord, T>() {
+            private T shown;
+
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    shown = null;
+                    setText(null);
+                } else if (item != shown || getText() == null) {
+                    shown = item;
+                    setText(item.toString());
+                }
+            }
+        };
+    }
+
+    //"Valid" / "Invalid" with one of the two given styles, nothing is built per update
+    static Callback<TableColumn<TransactionRecord, Boolean>, TableCell<TransactionRecord, Boolean>> statusCell(
+            String validStyle, String invalidStyle) {
+        return column -> new TableCell<TransactionRecord, Boolean>() {
+            @Override
+            protected void updateItem(Boolean valid, boolean empty) {
+                super.updateItem(valid, empty);
+                if (empty || valid == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(valid ? "Valid" : "Invalid");
+                    setStyle(valid ? validStyle : invalidStyle);
+                }
+            }
+        };
+    }
+}
@@ -1,27 +1,341 @@
 package javaApplication;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
 
 public class TransactionExporter {
 
+    // Records formatted by one parallel export task
+    static final int PARALLEL_SLICE_SIZE = 64 * 1024;
+
+    private static final String HEADER = "Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,Checksum\n";
+
     public static void exportToCSV(List<TransactionRecord> transactions, String filePath) throws IOException {
-        try (FileWriter writer = new FileWriter(filePath)) {
+        exportToCSV(transactions.iterator(), filePath);
+    }
+
+    //Same output as exportToCSV, written to a temp file next to filePath and renamed over it when complete,
+    //so readers of filePath see either the old or the new content. The temp file is on disk before the
+    //rename, a crash can't leave the rename without the data.
+    public static void exportToCSVAtomically(List<TransactionRecord> transactions, String filePath) throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            exportToCSV(transactions, temp.toString());
+            copyPermissions(target, temp);
+            force(temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(target.getParent());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // writes the file's content and attributes through to the disk
+    static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // makes a rename in the directory durable, where the platform can open directories (not on Windows)
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename is done, only its durability is left to the file system
+        }
+    }
+
+    //The temp file is created owner only, the rename would give the target that mode. Copies the target's
+    //permissions, and its owner and group where the user may change them, or gives a new target the
+    //permissions a plain export would have.
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        PosixFileAttributeView tempView = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        if (tempView == null) {
+            return;
+        }
+        PosixFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(target, PosixFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            tempView.setPermissions(newFilePermissions(temp));
+            return;
+        }
+        tempView.setPermissions(attributes.permissions());
+        try {
+            if (!attributes.group().equals(tempView.readAttributes().group())) {
+                tempView.setGroup(attributes.group());
+            }
+            if (!attributes.owner().equals(tempView.getOwner())) {
+                tempView.setOwner(attributes.owner());
+            }
+        } catch (IOException e) {
+            // only root may give the file away, it stays the saving user's
+        }
+    }
+
+    // the permissions of a file created without a mode, rw for everyone less the umask
+    private static Set<PosixFilePermission> newFilePermissions(Path temp) throws IOException {
+        Path probe = temp.resolveSibling(temp.getFileName() + ".mode");
+        Files.deleteIfExists(probe);
+        Files.createFile(probe);
+        try {
+            return Files.getPosixFilePermissions(probe);
+        } finally {
+            Files.delete(probe);
+        }
+    }
+
+    //Writes records as they arrive from the stream, so a streamed import can be exported in bounded memory
+    public static void exportToCSV(Stream<TransactionRecord> transactions, String filePath) throws IOException {
+        try {
+            exportToCSV(transactions.iterator(), filePath);
+        } catch (UncheckedIOException e) {
+            // reading side of a streamed import failed
+            throw e.getCause();
+        }
+    }
+
+    //Formats the records straight into a byte buffer that is written through a FileChannel in large blocks,
+    //numbers are formatted without creating strings
+    private static void exportToCSV(Iterator<TransactionRecord> transactions, String filePath) throws IOException {
+        PipelineMetrics.ExportRecorder recorder = new PipelineMetrics.ExportRecorder(filePath, "csv");
+        long rows = 0;
+        Charset charset = Charset.defaultCharset();
+        if (!TransactionImporter.isAsciiCompatible(charset)) {
+            // bytes can't be written without the encoder, same output through a Writer
+            try (Writer writer = new BufferedWriter(new FileWriter(filePath))) {
+                writer.append(HEADER);
+                while (transactions.hasNext()) {
+                    writeRecord(writer, transactions.next());
+                    rows++;
+                }
+            }
+            recorder.finish(rows);
+            return;
+        }
+
+        try (CsvRecordWriter writer = new CsvRecordWriter(openChannel(filePath), charset)) {
             // Write header
-            writer.append("Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,Checksum\n");
+            writer.putText(HEADER);
 
             // Write each transaction
-            for (TransactionRecord record : transactions) {
-                writer.append(record.getBillNumber()).append(",")
-                        .append(record.getItemCode()).append(",")
-                        .append(record.getInternalPrice().toString()).append(",")
-                        .append(record.getDiscount().toString()).append(",")
-                        .append(record.getSalePrice().toString()).append(",")
-                        .append(String.valueOf(record.getQuantity())).append(",")
-                        .append(record.getLineTotal().toString()).append(",")
-                        .append(String.valueOf(record.getOriginalChecksum())).append("\n");
+            while (transactions.hasNext()) {
+                writer.writeRecord(transactions.next());
+                rows++;
             }
         }
+        recorder.finish(rows);
+    }
+
+    public static void exportToCSVParallel(List<TransactionRecord> transactions, String filePath) throws IOException {
+        exportToCSVParallel(transactions, filePath, ForkJoinPool.commonPool());
+    }
+
+    public static void exportToCSVParallel(List<TransactionRecord> transactions, String filePath, ForkJoinPool pool)
+            throws IOException {
+        exportToCSVParallel(transactions, filePath, pool, PARALLEL_SLICE_SIZE);
+    }
+
+    //Same file as exportToCSV. Slices of the list are formatted into buffers on the pool, one round of
+    //slices at a time, and written in list order with a gathering write while the next round is formatted.
+    public static void exportToCSVParallel(List<TransactionRecord> transactions, String filePath, ForkJoinPool pool,
+                                           int sliceSize) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!TransactionImporter.isAsciiCompatible(charset)) {
+            exportToCSV(transactions, filePath);
+            return;
+        }
+
+        List<TransactionRecord> records = transactions instanceof RandomAccess
+                ? transactions : new ArrayList<>(transactions);
+        int sliceCount = (int) ((records.size() + (long) sliceSize - 1) / sliceSize);
+        // two rounds are in memory at once, the one being written and the one being formatted
+        int roundSize = Math.max(1, pool.getParallelism() * 2);
+
+        PipelineMetrics.ExportRecorder recorder = new PipelineMetrics.ExportRecorder(filePath, "parallel");
+        try (FileChannel channel = openChannel(filePath)) {
+            writeFully(channel, ByteBuffer.wrap(HEADER.getBytes(charset)));
+
+            FormatTask round = sliceCount > 0
+                    ? new FormatTask(records, charset, sliceSize, 0, Math.min(roundSize, sliceCount)) : null;
+            if (round != null) {
+                pool.execute(round);
+            }
+            while (round != null) {
+                round.join();
+                round.rethrowFailure();
+                FormatTask current = round;
+                round = null;
+                if (current.to < sliceCount) {
+                    round = new FormatTask(records, charset, sliceSize, current.to,
+                            Math.min(current.to + roundSize, sliceCount));
+                    pool.execute(round);
+                }
+                writeFully(channel, current.slices);
+            }
+        }
+        recorder.finish(records.size());
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    //Formats the slices [from, to) of the records, splitting the range in halves down to single slices
+    @SuppressWarnings("serial")
+    private static class FormatTask extends RecursiveAction {
+        private final List<TransactionRecord> records;
+        private final Charset charset;
+        private final int sliceSize;
+        private final int from;
+        private final int to;
+        // per slice of the range, shared with the subtasks
+        private final ByteBuffer[] slices;
+        private final RuntimeException[] failures;
+        private final int offset;
+
+        FormatTask(List<TransactionRecord> records, Charset charset, int sliceSize, int from, int to) {
+            this(records, charset, sliceSize, from, to, new ByteBuffer[to - from], new RuntimeException[to - from],
+                    from);
+        }
+
+        private FormatTask(List<TransactionRecord> records, Charset charset, int sliceSize, int from, int to,
+                           ByteBuffer[] slices, RuntimeException[] failures, int offset) {
+            this.records = records;
+            this.charset = charset;
+            this.sliceSize = sliceSize;
+            this.from = from;
+            this.to = to;
+            this.slices = slices;
+            this.failures = failures;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FormatTask(records, charset, sliceSize, from, middle, slices, failures, offset),
+                        new FormatTask(records, charset, sliceSize, middle, to, slices, failures, offset));
+                return;
+            }
+
+            int start = from * sliceSize;
+            int end = (int) Math.min((long) start + sliceSize, records.size());
+            try {
+                // about 64 bytes per record, grows when needed
+                CsvRecordWriter writer = new CsvRecordWriter(charset, (int) Math.min((end - start) * 64L, 1 << 24));
+                for (int i = start; i < end; i++) {
+                    writer.writeRecord(records.get(i));
+                }
+                slices[from - offset] = writer.bytes();
+            } catch (IOException e) {
+                failures[from - offset] = new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                // kept as is, rethrowing through the pool would replace it with a copy
+                failures[from - offset] = e;
+            }
+        }
+
+        // the failure of the first slice that failed
+        void rethrowFailure() throws IOException {
+            for (RuntimeException failure : failures) {
+                if (failure instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) failure).getCause();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    //Writes the rows of a column store, same output as exporting store.getTransactions()
+    public static void exportToCSV(TransactionStore store, String filePath) throws IOException {
+        PipelineMetrics.ExportRecorder recorder = new PipelineMetrics.ExportRecorder(filePath, "store");
+        Charset charset = Charset.defaultCharset();
+        if (TransactionImporter.isAsciiCompatible(charset)) {
+            try (CsvRecordWriter writer = new CsvRecordWriter(openChannel(filePath), charset)) {
+                writer.putText(HEADER);
+                for (int row = 0; row < store.size(); row++) {
+                    store.writeRow(row, writer);
+                }
+            }
+            recorder.finish(store.size());
+            return;
+        }
+
+        try (Writer writer = new BufferedWriter(new FileWriter(filePath))) {
+            writer.append(HEADER);
+
+            for (int row = 0; row < store.size(); row++) {
+                writer.append(store.getBillNumber(row)).append(",")
+                        .append(store.getItemCode(row)).append(",")
+                        .append(store.getInternalPrice(row).toString()).append(",")
+                        .append(store.getDiscount(row).toString()).append(",")
+                        .append(store.getSalePrice(row).toString()).append(",")
+                        .append(String.valueOf(store.getQuantity(row))).append(",")
+                        .append(store.getLineTotal(row).toString()).append(",")
+                        .append(String.valueOf(store.getChecksum(row))).append("\n");
+            }
+        }
+        recorder.finish(store.size());
+    }
+
+    //Binary snapshot of the processor's records, validity flags and tax rate, see TransactionImporter.importSnapshot
+    public static void exportSnapshot(TaxProcessor processor, String filePath) throws IOException {
+        TransactionSnapshot.write(processor, filePath);
+    }
+
+    static FileChannel openChannel(String filePath) throws IOException {
+        return FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    static void writeRecord(Writer writer, TransactionRecord record) throws IOException {
+        writer.append(record.getBillNumber()).append(",")
+                .append(record.getItemCode()).append(",")
+                .append(record.getInternalPrice().toString()).append(",")
+                .append(record.getDiscount().toString()).append(",")
+                .append(record.getSalePrice().toString()).append(",")
+                .append(String.valueOf(record.getQuantity())).append(",")
+                .append(record.getLineTotal().toString()).append(",")
+                .append(String.valueOf(record.getOriginalChecksum())).append("\n");
     }
-}
+}
\ No newline at end of file
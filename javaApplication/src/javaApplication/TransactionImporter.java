@@ -1,51 +1,536 @@
 package javaApplication;
 
+import javaApplication.TransactionValidator.ChecksumMode;
+
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 //Imports and parses transactions
 public class TransactionImporter {
 
+    // Target size of one parallel import chunk, the real chunk ends at the next newline
+    static final int PARALLEL_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    // Size of the window used when looking for the newline that ends a chunk
+    private static final int BOUNDARY_PROBE_SIZE = 64 * 1024;
+
+    // Records parsed between two ProgressListener calls
+    static final int PROGRESS_INTERVAL = 1000;
+
+    //Told about the progress of an import on the importing thread
+    public interface ProgressListener {
+        //Bytes of the file read and records parsed so far, returning false stops the import
+        //with a CancellationException
+        boolean progress(long bytesRead, int records);
+    }
+
     public static List<TransactionRecord> importFromCSV(String filePath) throws IOException {
+        return importFromCSV(filePath, ChecksumMode.RECONSTRUCTED_LINE);
+    }
+
+    public static List<TransactionRecord> importFromCSV(String filePath, ChecksumMode checksumMode) throws IOException {
         List<TransactionRecord> transactions = new ArrayList<>();
+        forEachRecord(filePath, checksumMode, transactions::add, null);
+        return transactions;
+    }
+
+    public static void forEachRecord(String filePath, Consumer<? super TransactionRecord> consumer) throws IOException {
+        forEachRecord(filePath, ChecksumMode.RECONSTRUCTED_LINE, consumer);
+    }
+
+    //Hands every parsed record to the consumer without keeping it, memory use doesn't grow with the file
+    public static void forEachRecord(String filePath, ChecksumMode checksumMode,
+                                     Consumer<? super TransactionRecord> consumer) throws IOException {
+        forEachRecord(filePath, checksumMode, consumer, null);
+    }
+
+    //Same as forEachRecord, progress (if not null) is told every PROGRESS_INTERVAL records and at the end
+    public static void forEachRecord(String filePath, ChecksumMode checksumMode,
+                                     Consumer<? super TransactionRecord> consumer, ProgressListener progress)
+            throws IOException {
+        PipelineMetrics.ImportRecorder recorder = new PipelineMetrics.ImportRecorder(filePath, "csv");
+        Charset charset = Charset.defaultCharset();
+        if (!isAsciiCompatible(charset)) {
+            forEachRecordDecoded(filePath, checksumMode, record -> {
+                recorder.record(record);
+                consumer.accept(record);
+            }, progress);
+            recorder.finish();
+            return;
+        }
+
+        try (CsvLineReader lines = new CsvLineReader(FileChannel.open(Paths.get(filePath), StandardOpenOption.READ))) {
+            TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(charset);
+            // Skipped header
+            lines.nextLine();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            int records = 0;
+            while (lines.nextLine()) {
+                if (tokenizer.tokenize(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                    TransactionRecord record = parseRecord(tokenizer, checksumMode);
+                    recorder.record(record);
+                    consumer.accept(record);
+                    if (++records % PROGRESS_INTERVAL == 0) {
+                        reportProgress(progress, lines.bytesRead(), records);
+                    }
+                }
+            }
+            reportProgress(progress, lines.bytesRead(), records);
+        }
+        recorder.finish();
+    }
+
+    private static void reportProgress(ProgressListener progress, long bytesRead, int records) {
+        if (progress != null && !progress.progress(bytesRead, records)) {
+            throw new CancellationException("Import cancelled");
+        }
+    }
+
+    public static Stream<TransactionRecord> streamFromCSV(String filePath) throws IOException {
+        return streamFromCSV(filePath, ChecksumMode.RECONSTRUCTED_LINE);
+    }
+
+    //Lazily parsed records of the file, the stream has to be closed to release the file
+    public static Stream<TransactionRecord> streamFromCSV(String filePath, ChecksumMode checksumMode)
+            throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!isAsciiCompatible(charset)) {
+            return streamFromCSVDecoded(filePath, checksumMode);
+        }
+
+        CsvLineReader lines = new CsvLineReader(FileChannel.open(Paths.get(filePath), StandardOpenOption.READ));
+        try {
+            // Skipped header
+            lines.nextLine();
+        } catch (IOException e) {
+            lines.close();
+            throw e;
+        }
+
+        TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(charset);
+        Spliterator<TransactionRecord> records = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super TransactionRecord> action) {
+                try {
+                    while (lines.nextLine()) {
+                        if (tokenizer.tokenize(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                            action.accept(parseRecord(tokenizer, checksumMode));
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(records, false).onClose(() -> closeUnchecked(lines));
+    }
+
+    // String based reading for default charsets that aren't ASCII compatible (e.g. UTF-16)
+    private static void forEachRecordDecoded(String filePath, ChecksumMode checksumMode,
+                                             Consumer<? super TransactionRecord> consumer, ProgressListener progress)
+            throws IOException {
+        CountingInputStream input = new CountingInputStream(new FileInputStream(filePath));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
             String line;
             // Skipped header
             reader.readLine();
 
+            int records = 0;
             while ((line = reader.readLine()) != null) {
-                String[] fields = line.split(",");
+                TransactionRecord record = parseRecord(line, checksumMode);
+                if (record != null) {
+                    consumer.accept(record);
+                    if (++records % PROGRESS_INTERVAL == 0) {
+                        // includes what the reader has buffered ahead
+                        reportProgress(progress, input.count, records);
+                    }
+                }
+            }
+            reportProgress(progress, input.count, records);
+        }
+    }
+
+    // bytes read from the file, for the progress of decoded imports
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private static Stream<TransactionRecord> streamFromCSVDecoded(String filePath, ChecksumMode checksumMode)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(filePath));
+        try {
+            // Skipped header
+            reader.readLine();
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
 
-                if (fields.length >= 8) {
-                    String billNumber = fields[0];
-                    String itemCode = fields[1];
-                    BigDecimal internalPrice = new BigDecimal(fields[2]);
-                    BigDecimal discount = new BigDecimal(fields[3]);
-                    BigDecimal salePrice = new BigDecimal(fields[4]);
-                    int quantity = Integer.parseInt(fields[5]);
-                    BigDecimal lineTotal = new BigDecimal(fields[6]);
-                    int checksum = Integer.parseInt(fields[7]);
+        return reader.lines()
+                .map(line -> parseRecord(line, checksumMode))
+                .filter(Objects::nonNull)
+                .onClose(() -> closeUnchecked(reader));
+    }
 
-                    TransactionRecord record = new TransactionRecord(
-                            billNumber, itemCode, internalPrice, discount, salePrice, quantity, lineTotal, checksum);
+    private static void closeUnchecked(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                    record.calculateLineTotal();
+    public static TransactionStore importToStore(String filePath) throws IOException {
+        return importToStore(filePath, ChecksumMode.RECONSTRUCTED_LINE);
+    }
 
-                    // Validating the record
-                    boolean isValid = TransactionValidator.validateTransaction(record);
-                    record.setValid(isValid);
+    //Imports straight into column storage, lines are not turned into TransactionRecords on the way
+    public static TransactionStore importToStore(String filePath, ChecksumMode checksumMode) throws IOException {
+        PipelineMetrics.ImportRecorder recorder = new PipelineMetrics.ImportRecorder(filePath, "store");
+        TransactionStore store = new TransactionStore();
+        Charset charset = Charset.defaultCharset();
+        if (!isAsciiCompatible(charset)) {
+            forEachRecordDecoded(filePath, checksumMode, store::add, null);
+            recorder.setRows(store.size(), store.getInvalidCount());
+            recorder.finish();
+            return store;
+        }
 
-                    transactions.add(record);
+        try (CsvLineReader lines = new CsvLineReader(FileChannel.open(Paths.get(filePath), StandardOpenOption.READ))) {
+            TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(charset);
+            // Skipped header
+            lines.nextLine();
+
+            while (lines.nextLine()) {
+                if (tokenizer.tokenize(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                    store.add(tokenizer, checksumMode);
                 }
             }
         }
+        recorder.setRows(store.size(), store.getInvalidCount());
+        recorder.finish();
+        return store;
+    }
 
-        return transactions;
+    //Loads a snapshot written by TransactionExporter.exportSnapshot, records keep their saved validity
+    //and are not parsed or validated again
+    public static TaxProcessor importSnapshot(String filePath) throws IOException {
+        return TransactionSnapshot.read(filePath);
+    }
+
+    public static List<TransactionRecord> importFromCSVParallel(String filePath) throws IOException {
+        return importFromCSVParallel(filePath, ForkJoinPool.commonPool());
+    }
+
+    public static List<TransactionRecord> importFromCSVParallel(String filePath, ForkJoinPool pool) throws IOException {
+        return importFromCSVParallel(filePath, pool, PARALLEL_CHUNK_SIZE);
+    }
+
+    public static List<TransactionRecord> importFromCSVParallel(String filePath, ForkJoinPool pool, int chunkSize)
+            throws IOException {
+        return importFromCSVParallel(filePath, pool, chunkSize, ChecksumMode.RECONSTRUCTED_LINE);
+    }
+
+    //Memory maps the file and parses newline aligned chunks on the given pool, records keep the file order
+    public static List<TransactionRecord> importFromCSVParallel(String filePath, ForkJoinPool pool, int chunkSize,
+                                                                ChecksumMode checksumMode) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!isAsciiCompatible(charset)) {
+            // newline and comma bytes can't be located without decoding, so fall back
+            return importFromCSV(filePath, checksumMode);
+        }
+
+        PipelineMetrics.ImportRecorder recorder = new PipelineMetrics.ImportRecorder(filePath, "parallel");
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long[] bounds = findChunkBounds(channel, chunkSize);
+            int chunkCount = bounds.length - 1;
+            if (chunkCount == 0) {
+                recorder.finish();
+                return new ArrayList<>();
+            }
+
+            List<List<TransactionRecord>> parts = new ArrayList<>(Collections.nCopies(chunkCount, null));
+            List<RuntimeException> failures = new ArrayList<>(Collections.nCopies(chunkCount, null));
+            pool.invoke(new ChunkImportTask(channel, charset, checksumMode, bounds, parts, failures, 0, chunkCount));
+
+            // the failure of the earliest chunk is the one the sequential import would have hit first
+            for (RuntimeException failure : failures) {
+                if (failure instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) failure).getCause();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+
+            int total = 0;
+            for (List<TransactionRecord> part : parts) {
+                total += part.size();
+            }
+            List<TransactionRecord> transactions = new ArrayList<>(total);
+            for (List<TransactionRecord> part : parts) {
+                transactions.addAll(part);
+            }
+            recorder.recordAll(transactions);
+            recorder.finish();
+            return transactions;
+        }
+    }
+
+    //Creates and validates the record of a tokenized line, same result as parseRecord(String) on the decoded line
+    static TransactionRecord parseRecord(TransactionLineTokenizer tokenizer, ChecksumMode checksumMode) {
+        TransactionRecord record = new TransactionRecord(
+                tokenizer.stringField(0),
+                tokenizer.stringField(1),
+                tokenizer.moneyField(2),
+                tokenizer.moneyField(3),
+                tokenizer.moneyField(4),
+                tokenizer.intField(5),
+                tokenizer.moneyField(6),
+                tokenizer.intField(7));
+
+        record.calculateLineTotal();
+
+        // Validating the record, the source checksum was counted on the raw bytes while tokenizing
+        int calculatedChecksum = checksumMode == ChecksumMode.SOURCE_LINE
+                ? tokenizer.sourceChecksum()
+                : TransactionValidator.calculateChecksum(record);
+        record.setValid(TransactionValidator.validateTransaction(record, calculatedChecksum));
+
+        return record;
+    }
+
+    //Parses and validates one data line, returns null for lines with less than 8 fields
+    static TransactionRecord parseRecord(String line, ChecksumMode checksumMode) {
+        String[] fields = line.split(",");
+
+        if (fields.length < 8) {
+            return null;
+        }
+
+        String billNumber = fields[0];
+        String itemCode = fields[1];
+        BigDecimal internalPrice = new BigDecimal(fields[2]);
+        BigDecimal discount = new BigDecimal(fields[3]);
+        BigDecimal salePrice = new BigDecimal(fields[4]);
+        int quantity = Integer.parseInt(fields[5]);
+        BigDecimal lineTotal = new BigDecimal(fields[6]);
+        int checksum = Integer.parseInt(fields[7]);
+
+        TransactionRecord record = new TransactionRecord(
+                billNumber, itemCode, internalPrice, discount, salePrice, quantity, lineTotal, checksum);
+
+        record.calculateLineTotal();
+
+        // Validating the record
+        int calculatedChecksum = checksumMode == ChecksumMode.SOURCE_LINE
+                ? TransactionValidator.calculateChecksum(String.join(",", Arrays.asList(fields).subList(0, 7)))
+                : TransactionValidator.calculateChecksum(record);
+        record.setValid(TransactionValidator.validateTransaction(record, calculatedChecksum));
+
+        return record;
+    }
+
+    //Returns the chunk start offsets followed by the end of file, the first chunk starts after the header
+    static long[] findChunkBounds(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        long start = skipHeader(channel, size);
+        if (start >= size) {
+            return new long[] {size};
+        }
+
+        long[] bounds = new long[16];
+        int count = 0;
+        bounds[count++] = start;
+        while (start < size) {
+            long end = size;
+            if (size - start > chunkSize) {
+                long newline = indexOf(channel, start + chunkSize, size, (byte) '\n');
+                end = newline < 0 ? size : newline + 1;
+            }
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = end;
+            start = end;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // same line terminators as BufferedReader.readLine: \n, \r or \r\n
+    private static long skipHeader(FileChannel channel, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+        long position = 0;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = probe.get(i);
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    long next = position + i + 1;
+                    if (next < size && byteAt(channel, next) == '\n') {
+                        next++;
+                    }
+                    return next;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static long indexOf(FileChannel channel, long from, long to, byte target) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+        long position = from;
+        while (position < to) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == target) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return -1;
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    //Charsets where '\n' and ',' are always single bytes that never occur inside another character
+    static boolean isAsciiCompatible(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+        String probe = "\r\n,.-+0123456789";
+        return Arrays.equals(probe.getBytes(charset), probe.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    //Splits the chunk range in halves until a single chunk is left, then parses it
+    @SuppressWarnings("serial")
+    private static class ChunkImportTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final Charset charset;
+        private final ChecksumMode checksumMode;
+        private final long[] bounds;
+        private final List<List<TransactionRecord>> parts;
+        private final List<RuntimeException> failures;
+        private final int from;
+        private final int to;
+
+        ChunkImportTask(FileChannel channel, Charset charset, ChecksumMode checksumMode, long[] bounds,
+                        List<List<TransactionRecord>> parts, List<RuntimeException> failures, int from, int to) {
+            this.channel = channel;
+            this.charset = charset;
+            this.checksumMode = checksumMode;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkImportTask(channel, charset, checksumMode, bounds, parts, failures, from, middle),
+                        new ChunkImportTask(channel, charset, checksumMode, bounds, parts, failures, middle, to));
+                return;
+            }
+
+            try {
+                long start = bounds[from];
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, bounds[from + 1] - start);
+                parts.set(from, parseChunk(mapped, charset, checksumMode));
+            } catch (IOException e) {
+                failures.set(from, new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                // kept as is, rethrowing through the pool would replace it with a copy
+                failures.set(from, e);
+            }
+        }
+
+        private static List<TransactionRecord> parseChunk(ByteBuffer chunk, Charset charset,
+                                                          ChecksumMode checksumMode) throws IOException {
+            List<TransactionRecord> records = new ArrayList<>();
+            CsvLineReader lines = new CsvLineReader(chunk);
+            TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(charset);
+            while (lines.nextLine()) {
+                if (tokenizer.tokenize(lines.buffer(), lines.lineStart(), lines.lineEnd())) {
+                    records.add(parseRecord(tokenizer, checksumMode));
+                }
+            }
+            return records;
+        }
     }
 
 
@@ -64,4 +549,4 @@ public class TransactionImporter {
 
         return new int[] {totalRecords, validRecords, invalidRecords};
     }
-}
\ No newline at end of file
+}
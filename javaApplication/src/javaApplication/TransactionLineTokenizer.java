@@ -0,0 +1,256 @@
+package javaApplication;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+//Splits a raw transaction line into its 8 fields without creating strings,
+//numbers are read straight from the bytes into unscaled long + scale
+public class TransactionLineTokenizer {
+
+    public static final int FIELD_COUNT = 8;
+
+    // 18 digits always fit in a long
+    private static final int MAX_FIXED_POINT_DIGITS = 18;
+
+    // 1 for the ASCII characters TransactionValidator.calculateChecksum counts: letters, digits and '.'
+    private static final byte[] CHECKSUM_WEIGHT = new byte[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            if (Character.isLetterOrDigit(c) || c == '.') {
+                CHECKSUM_WEIGHT[c] = 1;
+            }
+        }
+    }
+
+    private final Charset charset;
+    private final int[] starts = new int[FIELD_COUNT];
+    private final int[] ends = new int[FIELD_COUNT];
+    private final long[] unscaled = new long[FIELD_COUNT];
+    private final int[] scales = new int[FIELD_COUNT];
+    private ByteBuffer buffer;
+    private byte[] scratch = new byte[64];
+
+    // bit per field, set once the field was tried / could be read as fixed point
+    private int parsedFields;
+    private int fixedPointFields;
+
+    // checksum of the original bytes of the first 7 fields, counted while tokenizing
+    private int sourceChecksum;
+    private boolean sourceNonAscii;
+
+    public TransactionLineTokenizer() {
+        this(Charset.defaultCharset());
+    }
+
+    public TransactionLineTokenizer(Charset charset) {
+        this.charset = charset;
+    }
+
+    //Finds the field bounds of the line in buffer[from, to), returns false when the line has less than 8 fields
+    //the same way line.split(",") counts them (trailing empty fields don't count)
+    public boolean tokenize(ByteBuffer buffer, int from, int to) {
+        this.buffer = buffer;
+        this.parsedFields = 0;
+        this.fixedPointFields = 0;
+
+        int field = 0;
+        int start = from;
+        int checksum = 0;
+        boolean nonAscii = false;
+        for (int i = from; i < to && field < FIELD_COUNT - 1; i++) {
+            byte b = buffer.get(i);
+            if (b == ',') {
+                starts[field] = start;
+                ends[field] = i;
+                field++;
+                start = i + 1;
+            } else if (b < 0) {
+                nonAscii = true;
+            } else {
+                checksum += CHECKSUM_WEIGHT[b];
+            }
+        }
+        this.sourceChecksum = checksum;
+        this.sourceNonAscii = nonAscii;
+        if (field < FIELD_COUNT - 1) {
+            return false;
+        }
+
+        int end = start;
+        while (end < to && buffer.get(end) != ',') {
+            end++;
+        }
+        starts[FIELD_COUNT - 1] = start;
+        ends[FIELD_COUNT - 1] = end;
+        if (end > start) {
+            return true;
+        }
+
+        // empty checksum field, it only counts if something non empty follows it
+        for (int i = end; i < to; i++) {
+            if (buffer.get(i) != ',') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int fieldStart(int field) {
+        return starts[field];
+    }
+
+    public int fieldEnd(int field) {
+        return ends[field];
+    }
+
+    public String stringField(int field) {
+        return decode(starts[field], ends[field]);
+    }
+
+    //Checksum of the first 7 fields exactly as they are in the file (how pos.py calculates it)
+    public int sourceChecksum() {
+        if (sourceNonAscii) {
+            // non ASCII letters are counted by Character.isUpperCase / isLowerCase on the decoded text
+            return TransactionValidator.calculateChecksum(decode(starts[0], ends[FIELD_COUNT - 2]));
+        }
+        return sourceChecksum;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, charset);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    //Same value and scale as new BigDecimal(stringField(field)), including the exceptions
+    public BigDecimal decimalField(int field) {
+        if (isFixedPoint(field)) {
+            return BigDecimal.valueOf(unscaled[field], scales[field]);
+        }
+        return new BigDecimal(stringField(field));
+    }
+
+    //Same value and scale as decimalField(field), without creating a BigDecimal for plain decimals
+    public Money moneyField(int field) {
+        if (isFixedPoint(field)) {
+            return Money.of(unscaled[field], scales[field]);
+        }
+        return Money.of(new BigDecimal(stringField(field)));
+    }
+
+    //Same result as Integer.parseInt(stringField(field)), including the exceptions
+    public int intField(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end) {
+            byte first = buffer.get(i);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+        if (i == end || end - i > 10) {
+            return Integer.parseInt(stringField(field));
+        }
+
+        // accumulated negatively like Integer.parseInt so MIN_VALUE fits
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(stringField(field));
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            value = -value;
+        }
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return Integer.parseInt(stringField(field));
+        }
+        return (int) value;
+    }
+
+    //True when the field is a plain decimal (sign, digits, optional fraction) that fits an unscaled long
+    public boolean isFixedPoint(int field) {
+        int bit = 1 << field;
+        if ((parsedFields & bit) == 0) {
+            parsedFields |= bit;
+            if (parseFixedPoint(field)) {
+                fixedPointFields |= bit;
+            }
+        }
+        return (fixedPointFields & bit) != 0;
+    }
+
+    //Only meaningful when isFixedPoint(field) is true
+    public long unscaledValue(int field) {
+        return unscaled[field];
+    }
+
+    //Only meaningful when isFixedPoint(field) is true
+    public int scale(int field) {
+        return scales[field];
+    }
+
+    private boolean parseFixedPoint(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end) {
+            byte first = buffer.get(i);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+
+        long value = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            digits++;
+            if (fraction) {
+                scale++;
+            }
+            if (value != 0 || digit != 0) {
+                if (++significantDigits > MAX_FIXED_POINT_DIGITS) {
+                    return false;
+                }
+                value = value * 10 + digit;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        unscaled[field] = negative ? -value : value;
+        scales[field] = scale;
+        return true;
+    }
+}
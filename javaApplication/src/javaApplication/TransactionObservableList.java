@@ -0,0 +1,71 @@
+package javaApplication;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.List;
+
+//Read only ObservableList over a TaxProcessor's live records. Nothing is copied, get() reads the processor's
+//storage and the processor's changes are passed on as they happen: an edit is a single row change, a delete
+//removes its row, a bulk delete is one change with all removed rows.
+public class TransactionObservableList extends ObservableListBase<TransactionRecord> {
+
+    private final TaxProcessor processor;
+    private final List<TransactionRecord> records;
+    private final TaxProcessor.ChangeListener listener = new TaxProcessor.ChangeListener() {
+        @Override
+        public void changesStarting() {
+            beginChange();
+        }
+
+        @Override
+        public void changesFinished() {
+            endChange();
+        }
+
+        @Override
+        public void recordsReplaced(List<TransactionRecord> previous) {
+            if (!previous.isEmpty()) {
+                nextRemove(0, previous);
+            }
+            if (!records.isEmpty()) {
+                nextAdd(0, records.size());
+            }
+        }
+
+        @Override
+        public void recordSet(int index, TransactionRecord previous) {
+            nextSet(index, previous);
+        }
+
+        @Override
+        public void recordChanged(int index) {
+            nextUpdate(index);
+        }
+
+        @Override
+        public void recordDeleted(int index, TransactionRecord record) {
+            nextRemove(index, record);
+        }
+    };
+
+    public TransactionObservableList(TaxProcessor processor) {
+        this.processor = processor;
+        this.records = processor.getTransactions();
+        processor.addChangeListener(listener);
+    }
+
+    @Override
+    public TransactionRecord get(int index) {
+        return records.get(index);
+    }
+
+    @Override
+    public int size() {
+        return processor.size();
+    }
+
+    //Stops following the processor
+    public void dispose() {
+        processor.removeChangeListener(listener);
+    }
+}
@@ -6,18 +6,29 @@ import java.math.BigDecimal;
 public class TransactionRecord {
     private String billNumber;
     private String itemCode;
-    private BigDecimal internalPrice;
-    private BigDecimal discount;
-    private BigDecimal salePrice;
+    // amounts are fixed point Money, the BigDecimal getters hand out the same values
+    private Money internalPrice;
+    private Money discount;
+    private Money salePrice;
     private int quantity;
-    private BigDecimal lineTotal;
+    private Money lineTotal;
     private int originalChecksum;
     private boolean isValid;
-    private BigDecimal profit;
+    private Money profit;
+    // the TaxProcessor holding this record and its position there, it is told about profit and validity changes
+    private TaxProcessor owner;
+    private int index;
 
     public TransactionRecord(String billNumber, String itemCode, BigDecimal internalPrice,
                              BigDecimal discount, BigDecimal salePrice, int quantity,
                              BigDecimal lineTotal, int checksum) {
+        this(billNumber, itemCode, Money.of(internalPrice), Money.of(discount), Money.of(salePrice),
+                quantity, Money.of(lineTotal), checksum);
+    }
+
+    TransactionRecord(String billNumber, String itemCode, Money internalPrice,
+                      Money discount, Money salePrice, int quantity,
+                      Money lineTotal, int checksum) {
         this.billNumber = billNumber;
         this.itemCode = itemCode;
         this.internalPrice = internalPrice;
@@ -30,14 +41,59 @@ public class TransactionRecord {
         calculateProfit();
     }
 
+    //Record with an already known profit and validity, as saved in a snapshot
+    TransactionRecord(String billNumber, String itemCode, Money internalPrice,
+                      Money discount, Money salePrice, int quantity,
+                      Money lineTotal, int checksum, Money profit, boolean valid) {
+        this.billNumber = billNumber;
+        this.itemCode = itemCode;
+        this.internalPrice = internalPrice;
+        this.discount = discount;
+        this.salePrice = salePrice;
+        this.quantity = quantity;
+        this.lineTotal = lineTotal;
+        this.originalChecksum = checksum;
+        this.isValid = valid;
+        this.profit = profit;
+    }
+
 
 
      //Profit = (sale price * quantity-(discount * quantity)) – (internal price * quantity)
     public void calculateProfit() {
-        BigDecimal internalTotal = internalPrice.multiply(new BigDecimal(quantity));
-        BigDecimal discountTotal = discount.multiply(new BigDecimal(quantity));
-        BigDecimal saleTotal = salePrice.multiply(new BigDecimal(quantity)).subtract(discountTotal);
-        this.profit = saleTotal.subtract(internalTotal);
+        update(Money.productDifference(quantity, salePrice, discount, internalPrice), isValid);
+    }
+
+    // sets profit and validity, keeping the owner's totals and validity index in sync
+    private void update(Money profit, boolean valid) {
+        TaxProcessor processor = owner;
+        if (processor != null) {
+            processor.recordChanging(this);
+        }
+        this.profit = profit;
+        this.isValid = valid;
+        if (processor != null) {
+            processor.recordChanged(this);
+        }
+    }
+
+    //Same values, held by no processor, for handing to another thread while this one can still be edited
+    TransactionRecord copy() {
+        return new TransactionRecord(billNumber, itemCode, internalPrice, discount, salePrice, quantity, lineTotal,
+                originalChecksum, profit, isValid);
+    }
+
+    void attach(TaxProcessor owner, int index) {
+        this.owner = owner;
+        this.index = index;
+    }
+
+    TaxProcessor getOwner() {
+        return owner;
+    }
+
+    int getIndex() {
+        return index;
     }
 
     public String getBillNumber() {
@@ -57,31 +113,43 @@ public class TransactionRecord {
     }
 
     public BigDecimal getInternalPrice() {
+        return internalPrice.toBigDecimal();
+    }
+
+    Money getInternalPriceMoney() {
         return internalPrice;
     }
 
     public void setInternalPrice(BigDecimal internalPrice) {
-        this.internalPrice = internalPrice;
+        this.internalPrice = Money.of(internalPrice);
         calculateLineTotal();
         calculateProfit();
     }
 
     public BigDecimal getDiscount() {
+        return discount.toBigDecimal();
+    }
+
+    Money getDiscountMoney() {
         return discount;
     }
 
     public void setDiscount(BigDecimal discount) {
-        this.discount = discount;
+        this.discount = Money.of(discount);
         calculateLineTotal();
         calculateProfit();
     }
 
     public BigDecimal getSalePrice() {
+        return salePrice.toBigDecimal();
+    }
+
+    Money getSalePriceMoney() {
         return salePrice;
     }
 
     public void setSalePrice(BigDecimal salePrice) {
-        this.salePrice = salePrice;
+        this.salePrice = Money.of(salePrice);
         calculateLineTotal();
         calculateProfit();
     }
@@ -97,11 +165,15 @@ public class TransactionRecord {
     }
 
     public BigDecimal getLineTotal() {
+        return lineTotal.toBigDecimal();
+    }
+
+    Money getLineTotalMoney() {
         return lineTotal;
     }
 
     public void setLineTotal(BigDecimal lineTotal) {
-        this.lineTotal = lineTotal;
+        this.lineTotal = Money.of(lineTotal);
     }
 
     public int getOriginalChecksum() {
@@ -117,15 +189,21 @@ public class TransactionRecord {
     }
 
     public void setValid(boolean valid) {
-        isValid = valid;
+        if (valid != isValid) {
+            update(profit, valid);
+        }
     }
 
     public BigDecimal getProfit() {
+        return profit.toBigDecimal();
+    }
+
+    Money getProfitMoney() {
         return profit;
     }
 
     public void setProfit(BigDecimal profit) {
-        this.profit = profit;
+        update(Money.of(profit), isValid);
     }
 
     @Override
@@ -152,9 +230,7 @@ public class TransactionRecord {
 
     // Line Total = (sale price * quantity) - (discount * quantity)
     public void calculateLineTotal() {
-        BigDecimal totalSalePrice = this.salePrice.multiply(new BigDecimal(quantity));
-        BigDecimal totalDiscount = this.discount.multiply(new BigDecimal(quantity));
-        this.lineTotal = totalSalePrice.subtract(totalDiscount);
+        this.lineTotal = Money.productDifference(quantity, salePrice, discount);
     }
 
 }
\ No newline at end of file
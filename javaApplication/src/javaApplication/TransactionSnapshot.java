@@ -0,0 +1,420 @@
+package javaApplication;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+//Binary columnar snapshot of a TaxProcessor: records, validity flags and tax rate.
+//Loading it skips parsing and validation, columns are read from memory mapped sections in bulk.
+//
+//Layout, little endian:
+//  header   magic, version, record count, bill number count, item code count, overflow count,
+//           body length, CRC32C of the body
+//  body     tax rate (length + UTF-8 text)
+//           bill number and item code dictionaries (count + 1 offsets, then UTF-8 bytes)
+//           bill number ids, item code ids                 int per record
+//           internal price, discount, sale price, line total, profit:
+//               unscaled values (long per record), scales (byte per record, OVERFLOW_SCALE when the
+//               value is in the overflow section)
+//           quantities, checksums                           int per record
+//           validity bits                                   long per 64 records
+//           overflow values: record, column, length + BigDecimal text
+final class TransactionSnapshot {
+
+    static final int MAGIC = 0x31535854; // "TXS1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private static final int DECIMAL_COLUMNS = 5;
+    private static final byte OVERFLOW_SCALE = Byte.MIN_VALUE;
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private TransactionSnapshot() {
+    }
+
+    static void write(TaxProcessor processor, String filePath) throws IOException {
+        write(new ArrayList<>(processor.getTransactions()), processor.getTaxRate(), filePath);
+    }
+
+    static void write(List<TransactionRecord> records, BigDecimal taxRate, String filePath) throws IOException {
+        PipelineMetrics.ExportRecorder recorder = new PipelineMetrics.ExportRecorder(filePath, "snapshot");
+        int count = records.size();
+
+        // dictionaries in order of first use
+        Map<String, Integer> billIds = new HashMap<>();
+        Map<String, Integer> itemIds = new HashMap<>();
+        List<String> billNumbers = new ArrayList<>();
+        List<String> itemCodes = new ArrayList<>();
+        int[] billColumn = new int[count];
+        int[] itemColumn = new int[count];
+        for (int i = 0; i < count; i++) {
+            billColumn[i] = idOf(records.get(i).getBillNumber(), billIds, billNumbers);
+            itemColumn[i] = idOf(records.get(i).getItemCode(), itemIds, itemCodes);
+        }
+
+        try (FileChannel channel = TransactionExporter.openChannel(filePath)) {
+            BodyWriter body = new BodyWriter(channel, HEADER_SIZE);
+            body.putBytes(taxRate.toString().getBytes(StandardCharsets.UTF_8));
+            putDictionary(body, billNumbers);
+            putDictionary(body, itemCodes);
+            for (int id : billColumn) {
+                body.putInt(id);
+            }
+            for (int id : itemColumn) {
+                body.putInt(id);
+            }
+
+            List<Money> overflow = new ArrayList<>();
+            List<long[]> overflowPositions = new ArrayList<>();
+            for (int column = 0; column < DECIMAL_COLUMNS; column++) {
+                for (TransactionRecord record : records) {
+                    Money value = decimal(record, column);
+                    body.putLong(fitsColumn(value) ? value.unscaledValue() : 0);
+                }
+                for (int i = 0; i < count; i++) {
+                    Money value = decimal(records.get(i), column);
+                    if (fitsColumn(value)) {
+                        body.putByte((byte) value.scale());
+                    } else {
+                        body.putByte(OVERFLOW_SCALE);
+                        overflow.add(value);
+                        overflowPositions.add(new long[] {i, column});
+                    }
+                }
+            }
+            for (TransactionRecord record : records) {
+                body.putInt(record.getQuantity());
+            }
+            for (TransactionRecord record : records) {
+                body.putInt(record.getOriginalChecksum());
+            }
+            for (int word = 0; word < (count + 63) / 64; word++) {
+                long bits = 0;
+                for (int bit = 0; bit < 64 && word * 64 + bit < count; bit++) {
+                    if (records.get(word * 64 + bit).isValid()) {
+                        bits |= 1L << bit;
+                    }
+                }
+                body.putLong(bits);
+            }
+            for (int i = 0; i < overflow.size(); i++) {
+                body.putInt((int) overflowPositions.get(i)[0]);
+                body.putByte((byte) overflowPositions.get(i)[1]);
+                body.putBytes(overflow.get(i).toString().getBytes(StandardCharsets.UTF_8));
+            }
+            body.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(billNumbers.size())
+                    .putInt(itemCodes.size()).putInt(overflow.size())
+                    .putLong(body.length()).putLong(body.checksum());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+        recorder.finish(count);
+    }
+
+    static TaxProcessor read(String filePath) throws IOException {
+        Contents contents = load(filePath);
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(contents.records);
+        processor.setTaxRate(contents.taxRate);
+        return processor;
+    }
+
+    //Records and tax rate of a snapshot, the records don't belong to a processor yet
+    static final class Contents {
+        final List<TransactionRecord> records;
+        final BigDecimal taxRate;
+
+        Contents(List<TransactionRecord> records, BigDecimal taxRate) {
+            this.records = records;
+            this.taxRate = taxRate;
+        }
+    }
+
+    static Contents load(String filePath) throws IOException {
+        PipelineMetrics.ImportRecorder recorder = new PipelineMetrics.ImportRecorder(filePath, "snapshot");
+        Contents contents = decode(filePath);
+        recorder.recordAll(contents.records);
+        recorder.finish();
+        return contents;
+    }
+
+    private static Contents decode(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a transaction snapshot: " + filePath);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a transaction snapshot: " + filePath);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + filePath);
+            }
+            int count = header.getInt();
+            int billNumberCount = header.getInt();
+            int itemCodeCount = header.getInt();
+            int overflowCount = header.getInt();
+            long bodyLength = header.getLong();
+            long checksum = header.getLong();
+            if (count < 0 || billNumberCount < 0 || itemCodeCount < 0 || overflowCount < 0
+                    || bodyLength != channel.size() - HEADER_SIZE) {
+                throw new IOException("Truncated transaction snapshot: " + filePath);
+            }
+
+            BodyReader body = new BodyReader(channel, HEADER_SIZE, bodyLength);
+            // checked before anything is decoded, so damaged offsets and lengths are never followed
+            if (body.checksum() != checksum) {
+                throw new IOException("Corrupt transaction snapshot (checksum mismatch): " + filePath);
+            }
+            BigDecimal taxRate = new BigDecimal(body.string());
+            String[] billNumbers = body.dictionary(billNumberCount);
+            String[] itemCodes = body.dictionary(itemCodeCount);
+            int[] billColumn = body.ints(count);
+            int[] itemColumn = body.ints(count);
+            long[][] unscaled = new long[DECIMAL_COLUMNS][];
+            byte[][] scales = new byte[DECIMAL_COLUMNS][];
+            for (int column = 0; column < DECIMAL_COLUMNS; column++) {
+                unscaled[column] = body.longs(count);
+                scales[column] = body.bytes(count);
+            }
+            int[] quantities = body.ints(count);
+            int[] checksums = body.ints(count);
+            long[] validBits = body.longs((count + 63) / 64);
+            Map<Long, Money> overflow = new HashMap<>();
+            ByteBuffer overflowSection = body.rest();
+            for (int i = 0; i < overflowCount; i++) {
+                long row = overflowSection.getInt();
+                int column = overflowSection.get();
+                byte[] text = new byte[overflowSection.getInt()];
+                overflowSection.get(text);
+                overflow.put(row * DECIMAL_COLUMNS + column, Money.of(new BigDecimal(
+                        new String(text, StandardCharsets.UTF_8))));
+            }
+
+            List<TransactionRecord> records = new ArrayList<>(count);
+            Money[] values = new Money[DECIMAL_COLUMNS];
+            for (int i = 0; i < count; i++) {
+                for (int column = 0; column < DECIMAL_COLUMNS; column++) {
+                    byte scale = scales[column][i];
+                    values[column] = scale == OVERFLOW_SCALE
+                            ? overflow.get((long) i * DECIMAL_COLUMNS + column)
+                            : Money.of(unscaled[column][i], scale);
+                }
+                records.add(new TransactionRecord(billNumbers[billColumn[i]], itemCodes[itemColumn[i]],
+                        values[0], values[1], values[2], quantities[i], values[3], checksums[i], values[4],
+                        (validBits[i >>> 6] & (1L << i)) != 0));
+            }
+            return new Contents(records, taxRate);
+        }
+    }
+
+    private static int idOf(String value, Map<String, Integer> ids, List<String> values) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            values.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    private static void putDictionary(BodyWriter body, List<String> values) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        int offset = 0;
+        body.putInt(offset);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            offset += bytes.length;
+            body.putInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            body.putRaw(bytes);
+        }
+    }
+
+    private static Money decimal(TransactionRecord record, int column) {
+        switch (column) {
+            case 0:
+                return record.getInternalPriceMoney();
+            case 1:
+                return record.getDiscountMoney();
+            case 2:
+                return record.getSalePriceMoney();
+            case 3:
+                return record.getLineTotalMoney();
+            default:
+                return record.getProfitMoney();
+        }
+    }
+
+    private static boolean fitsColumn(Money value) {
+        return value.isCompact() && value.scale() > OVERFLOW_SCALE && value.scale() <= Byte.MAX_VALUE;
+    }
+
+    // buffered sequential writes of the body, CRC32C over everything written
+    private static final class BodyWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private long position;
+        private long length;
+
+        BodyWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        // length + bytes
+        void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            putRaw(bytes);
+        }
+
+        void putRaw(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            length += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        long length() {
+            return length;
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+    }
+
+    // maps the body section by section, each section stays below the 2 GB mapping limit
+    private static final class BodyReader {
+        private static final long CHECKSUM_REGION_SIZE = 1L << 30;
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        BodyReader(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        private ByteBuffer section(long length) throws IOException {
+            if (length < 0 || length > end - position) {
+                throw new IOException("Truncated transaction snapshot");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        String string() throws IOException {
+            int length = section(Integer.BYTES).getInt();
+            byte[] bytes = new byte[length];
+            section(length).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] dictionary(int count) throws IOException {
+            int[] offsets = ints(count + 1);
+            ByteBuffer bytes = section(offsets[count]);
+            String[] values = new String[count];
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < count; i++) {
+                int length = offsets[i + 1] - offsets[i];
+                if (scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                bytes.get(offsets[i], scratch, 0, length);
+                values[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+
+        int[] ints(int count) throws IOException {
+            int[] values = new int[count];
+            section((long) count * Integer.BYTES).asIntBuffer().get(values);
+            return values;
+        }
+
+        long[] longs(int count) throws IOException {
+            long[] values = new long[count];
+            section((long) count * Long.BYTES).asLongBuffer().get(values);
+            return values;
+        }
+
+        byte[] bytes(int count) throws IOException {
+            byte[] values = new byte[count];
+            section(count).get(values);
+            return values;
+        }
+
+        ByteBuffer rest() throws IOException {
+            return section(end - position);
+        }
+
+        // CRC32C of the whole body
+        long checksum() throws IOException {
+            CRC32C crc = new CRC32C();
+            for (long from = position; from < end; from += CHECKSUM_REGION_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, from,
+                        Math.min(CHECKSUM_REGION_SIZE, end - from)));
+            }
+            return crc.getValue();
+        }
+    }
+}
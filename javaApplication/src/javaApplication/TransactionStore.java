@@ -0,0 +1,501 @@
+package javaApplication;
+
+import javaApplication.TransactionValidator.ChecksumMode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Column based (struct of arrays) storage for large files, offers the same operations as TaxProcessor.
+//Prices are kept as unscaled long + scale, bill numbers and item codes are dictionary encoded.
+public class TransactionStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private final Dictionary billNumbers = new Dictionary();
+    private final Dictionary itemCodes = new Dictionary();
+    // rule 2 result per item code dictionary id
+    private final BitSet validItemCodes = new BitSet();
+    private int[] billNumberIds = new int[INITIAL_CAPACITY];
+    private int[] itemCodeIds = new int[INITIAL_CAPACITY];
+    private final DecimalColumn internalPrices = new DecimalColumn(INITIAL_CAPACITY);
+    private final DecimalColumn discounts = new DecimalColumn(INITIAL_CAPACITY);
+    private final DecimalColumn salePrices = new DecimalColumn(INITIAL_CAPACITY);
+    private final DecimalColumn lineTotals = new DecimalColumn(INITIAL_CAPACITY);
+    private final DecimalColumn profits = new DecimalColumn(INITIAL_CAPACITY);
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] checksums = new int[INITIAL_CAPACITY];
+    private final BitSet valid = new BitSet();
+    private BigDecimal taxRate = BigDecimal.ZERO;
+
+    public int size() {
+        return size;
+    }
+
+    //Replaces the content with the given records, flags and line totals are taken as they are
+    public void setTransactions(List<TransactionRecord> transactions) {
+        clear();
+        for (TransactionRecord record : transactions) {
+            add(record);
+        }
+    }
+
+    public void clear() {
+        for (DecimalColumn column : decimalColumns()) {
+            column.truncate(0);
+        }
+        size = 0;
+        valid.clear();
+    }
+
+    public void add(TransactionRecord record) {
+        ensureCapacity(size + 1);
+        set(size, record);
+        size++;
+    }
+
+    //Adds a tokenized line without creating a TransactionRecord, the result is the same as
+    //add(TransactionImporter.parseRecord(tokenizer, checksumMode))
+    void add(TransactionLineTokenizer tokenizer, ChecksumMode checksumMode) {
+        String billNumber = tokenizer.stringField(0);
+        String itemCode = tokenizer.stringField(1);
+        // same parse order as the importer so the same field fails first
+        if (!tokenizer.isFixedPoint(2) || !tokenizer.isFixedPoint(3) || !tokenizer.isFixedPoint(4)) {
+            add(TransactionImporter.parseRecord(tokenizer, checksumMode));
+            return;
+        }
+        int quantity = tokenizer.intField(5);
+        if (!tokenizer.isFixedPoint(6)) {
+            add(TransactionImporter.parseRecord(tokenizer, checksumMode));
+            return;
+        }
+        int checksum = tokenizer.intField(7);
+
+        long internalPrice = tokenizer.unscaledValue(2);
+        int internalScale = tokenizer.scale(2);
+        long discount = tokenizer.unscaledValue(3);
+        int discountScale = tokenizer.scale(3);
+        long salePrice = tokenizer.unscaledValue(4);
+        int saleScale = tokenizer.scale(4);
+
+        // line total = sale price * quantity - discount * quantity, at the larger of both scales
+        int lineTotalScale = Math.max(saleScale, discountScale);
+        int profitScale = Math.max(lineTotalScale, internalScale);
+        long lineTotal;
+        long profit;
+        try {
+            lineTotal = Math.subtractExact(
+                    Money.rescale(Math.multiplyExact(salePrice, quantity), saleScale, lineTotalScale),
+                    Money.rescale(Math.multiplyExact(discount, quantity), discountScale, lineTotalScale));
+            profit = Math.subtractExact(
+                    Money.rescale(lineTotal, lineTotalScale, profitScale),
+                    Money.rescale(Math.multiplyExact(internalPrice, quantity), internalScale, profitScale));
+        } catch (ArithmeticException e) {
+            // too large for a long, the record path uses BigDecimal
+            add(TransactionImporter.parseRecord(tokenizer, checksumMode));
+            return;
+        }
+
+        int calculatedChecksum = checksumMode == ChecksumMode.SOURCE_LINE
+                ? tokenizer.sourceChecksum()
+                : TransactionValidator.textChecksum(billNumber)
+                        + TransactionValidator.textChecksum(itemCode)
+                        + TransactionValidator.decimalChecksum(internalPrice, internalScale)
+                        + TransactionValidator.decimalChecksum(discount, discountScale)
+                        + TransactionValidator.decimalChecksum(salePrice, saleScale)
+                        + TransactionValidator.digitCount(quantity)
+                        + TransactionValidator.decimalChecksum(lineTotal, lineTotalScale);
+
+        ensureCapacity(size + 1);
+        int row = size++;
+        billNumberIds[row] = billNumbers.idOf(billNumber);
+        itemCodeIds[row] = itemCodeId(itemCode);
+        internalPrices.set(row, internalPrice, internalScale);
+        discounts.set(row, discount, discountScale);
+        salePrices.set(row, salePrice, saleScale);
+        lineTotals.set(row, lineTotal, lineTotalScale);
+        profits.set(row, profit, profitScale);
+        quantities[row] = quantity;
+        checksums[row] = checksum;
+        boolean isValid = calculatedChecksum == checksum
+                && validItemCodes.get(itemCodeIds[row])
+                && salePrice >= 0;
+        valid.set(row, isValid);
+        if (!isValid && Metrics.isEnabled()) {
+            PipelineMetrics.validationFailed(TransactionValidator.failedRule(itemCode, salePrice < 0));
+        }
+    }
+
+    public List<TransactionRecord> getTransactions() {
+        return new AbstractList<TransactionRecord>() {
+            @Override
+            public TransactionRecord get(int index) {
+                return getRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public List<TransactionRecord> getValidTransactions() {
+        return collect(true);
+    }
+
+    public List<TransactionRecord> getInvalidTransactions() {
+        return collect(false);
+    }
+
+    private List<TransactionRecord> collect(boolean validRecords) {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (valid.get(row) == validRecords) {
+                records.add(getRecord(row));
+            }
+        }
+        return records;
+    }
+
+    public int getValidCount() {
+        return valid.cardinality();
+    }
+
+    public int getInvalidCount() {
+        return size - getValidCount();
+    }
+
+    //Creates a TransactionRecord with the values of the row
+    public TransactionRecord getRecord(int row) {
+        checkIndex(row);
+        TransactionRecord record = new TransactionRecord(
+                getBillNumber(row), getItemCode(row), getInternalPrice(row), getDiscount(row),
+                getSalePrice(row), getQuantity(row), getLineTotal(row), getChecksum(row));
+        record.setValid(isValid(row));
+        return record;
+    }
+
+    public String getBillNumber(int row) {
+        return billNumbers.valueOf(billNumberIds[row]);
+    }
+
+    public String getItemCode(int row) {
+        return itemCodes.valueOf(itemCodeIds[row]);
+    }
+
+    public BigDecimal getInternalPrice(int row) {
+        return internalPrices.get(row);
+    }
+
+    public BigDecimal getDiscount(int row) {
+        return discounts.get(row);
+    }
+
+    public BigDecimal getSalePrice(int row) {
+        return salePrices.get(row);
+    }
+
+    public int getQuantity(int row) {
+        return quantities[row];
+    }
+
+    public BigDecimal getLineTotal(int row) {
+        return lineTotals.get(row);
+    }
+
+    public int getChecksum(int row) {
+        return checksums[row];
+    }
+
+    public BigDecimal getProfit(int row) {
+        return profits.get(row);
+    }
+
+    public boolean isValid(int row) {
+        return valid.get(row);
+    }
+
+    public void setTaxRate(BigDecimal taxRate) {
+        this.taxRate = taxRate;
+    }
+
+    public BigDecimal getTaxRate() {
+        return taxRate;
+    }
+
+    //same rules as TaxProcessor.updateRecord
+    public void updateRecord(int index, TransactionRecord updatedRecord) {
+        if (index >= 0 && index < size) {
+            updatedRecord.calculateLineTotal();
+            updatedRecord.calculateProfit();
+            int newChecksum = TransactionValidator.calculateChecksum(updatedRecord);
+            updatedRecord.setOriginalChecksum(newChecksum);
+            updatedRecord.setValid(TransactionValidator.validateTransaction(updatedRecord, newChecksum));
+
+            set(index, updatedRecord);
+        }
+    }
+
+    public void deleteRecord(int index) {
+        if (index >= 0 && index < size) {
+            int tail = size - index - 1;
+            System.arraycopy(billNumberIds, index + 1, billNumberIds, index, tail);
+            System.arraycopy(itemCodeIds, index + 1, itemCodeIds, index, tail);
+            System.arraycopy(quantities, index + 1, quantities, index, tail);
+            System.arraycopy(checksums, index + 1, checksums, index, tail);
+            for (DecimalColumn column : decimalColumns()) {
+                column.remove(index, size);
+            }
+            for (int row = index; row < size - 1; row++) {
+                valid.set(row, valid.get(row + 1));
+            }
+            valid.clear(size - 1);
+            size--;
+        }
+    }
+
+    //deleting 0 profit transactions in one compacting pass
+    public void deleteZeroProfitRecords() {
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (profits.signum(row) == 0) {
+                continue;
+            }
+            if (kept != row) {
+                billNumberIds[kept] = billNumberIds[row];
+                itemCodeIds[kept] = itemCodeIds[row];
+                quantities[kept] = quantities[row];
+                checksums[kept] = checksums[row];
+                for (DecimalColumn column : decimalColumns()) {
+                    column.move(row, kept);
+                }
+                valid.set(kept, valid.get(row));
+            }
+            kept++;
+        }
+        for (DecimalColumn column : decimalColumns()) {
+            column.truncate(kept);
+        }
+        valid.clear(kept, size);
+        size = kept;
+    }
+
+    //final tax, same result (value and scale) as TaxProcessor.calculateFinalTax
+    public BigDecimal calculateFinalTax() {
+        // taxable amount = total profit - total loss = sum of all valid profits
+        Money.Sum sum = new Money.Sum();
+        for (int row = valid.nextSetBit(0); row >= 0 && row < size; row = valid.nextSetBit(row + 1)) {
+            if (profits.isCompact(row)) {
+                sum.add(profits.unscaled(row), profits.scale(row));
+            } else {
+                sum.add(Money.of(profits.get(row)));
+            }
+        }
+
+        BigDecimal taxableAmount = sum.total().toBigDecimal();
+        if (taxableAmount.signum() < 0) {
+            taxableAmount = BigDecimal.ZERO;  // Can't have negative tax
+        }
+        return taxableAmount.multiply(taxRate.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
+    }
+
+    //Writes the row as TransactionExporter writes the record, compact prices are formatted from the columns
+    void writeRow(int row, CsvRecordWriter out) throws IOException {
+        out.putText(getBillNumber(row));
+        out.putByte(',');
+        out.putText(getItemCode(row));
+        out.putByte(',');
+        writeDecimal(internalPrices, row, out);
+        out.putByte(',');
+        writeDecimal(discounts, row, out);
+        out.putByte(',');
+        writeDecimal(salePrices, row, out);
+        out.putByte(',');
+        out.putLong(quantities[row]);
+        out.putByte(',');
+        writeDecimal(lineTotals, row, out);
+        out.putByte(',');
+        out.putLong(checksums[row]);
+        out.putByte('\n');
+    }
+
+    private static void writeDecimal(DecimalColumn column, int row, CsvRecordWriter out) throws IOException {
+        if (column.isCompact(row)) {
+            out.putDecimal(column.unscaled(row), column.scale(row));
+        } else {
+            out.putDecimal(column.get(row));
+        }
+    }
+
+    private void set(int row, TransactionRecord record) {
+        billNumberIds[row] = billNumbers.idOf(record.getBillNumber());
+        itemCodeIds[row] = itemCodeId(record.getItemCode());
+        internalPrices.set(row, record.getInternalPrice());
+        discounts.set(row, record.getDiscount());
+        salePrices.set(row, record.getSalePrice());
+        lineTotals.set(row, record.getLineTotal());
+        profits.set(row, record.getProfit());
+        quantities[row] = record.getQuantity();
+        checksums[row] = record.getOriginalChecksum();
+        valid.set(row, record.isValid());
+    }
+
+    private int itemCodeId(String itemCode) {
+        int known = itemCodes.size();
+        int id = itemCodes.idOf(itemCode);
+        if (id == known) {
+            validItemCodes.set(id, TransactionValidator.isValidItemCode(itemCode));
+        }
+        return id;
+    }
+
+    private DecimalColumn[] decimalColumns() {
+        return new DecimalColumn[] {internalPrices, discounts, salePrices, lineTotals, profits};
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= quantities.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, quantities.length + (quantities.length >> 1));
+        billNumberIds = Arrays.copyOf(billNumberIds, newCapacity);
+        itemCodeIds = Arrays.copyOf(itemCodeIds, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        checksums = Arrays.copyOf(checksums, newCapacity);
+        for (DecimalColumn column : decimalColumns()) {
+            column.grow(newCapacity);
+        }
+    }
+
+    private void checkIndex(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    //Distinct strings of a column, rows keep an int id
+    private static final class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        String valueOf(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    //Decimal values as unscaled long + scale, values that don't fit are kept as BigDecimal on the side
+    private static final class DecimalColumn {
+        private long[] unscaled;
+        private byte[] scales;
+        private final Map<Integer, BigDecimal> overflow = new HashMap<>();
+
+        DecimalColumn(int capacity) {
+            unscaled = new long[capacity];
+            scales = new byte[capacity];
+        }
+
+        void set(int row, long value, int scale) {
+            if (scale < 0 || scale > Byte.MAX_VALUE) {
+                set(row, BigDecimal.valueOf(value, scale));
+                return;
+            }
+            unscaled[row] = value;
+            scales[row] = (byte) scale;
+            if (!overflow.isEmpty()) {
+                overflow.remove(row);
+            }
+        }
+
+        void set(int row, BigDecimal value) {
+            if (value.scale() >= 0 && value.scale() <= Byte.MAX_VALUE && value.unscaledValue().bitLength() < 64) {
+                set(row, value.unscaledValue().longValue(), value.scale());
+            } else {
+                overflow.put(row, value);
+            }
+        }
+
+        boolean isCompact(int row) {
+            return overflow.isEmpty() || !overflow.containsKey(row);
+        }
+
+        long unscaled(int row) {
+            return unscaled[row];
+        }
+
+        int scale(int row) {
+            return scales[row];
+        }
+
+        BigDecimal get(int row) {
+            if (!isCompact(row)) {
+                return overflow.get(row);
+            }
+            return BigDecimal.valueOf(unscaled[row], scales[row]);
+        }
+
+        int signum(int row) {
+            return isCompact(row) ? Long.signum(unscaled[row]) : overflow.get(row).signum();
+        }
+
+        void move(int from, int to) {
+            if (isCompact(from)) {
+                set(to, unscaled[from], scales[from]);
+            } else {
+                overflow.put(to, overflow.remove(from));
+            }
+        }
+
+        // removes the row from a column of the given size, later rows move up by one
+        void remove(int row, int size) {
+            System.arraycopy(unscaled, row + 1, unscaled, row, size - row - 1);
+            System.arraycopy(scales, row + 1, scales, row, size - row - 1);
+            if (!overflow.isEmpty()) {
+                Map<Integer, BigDecimal> moved = new HashMap<>();
+                overflow.forEach((key, value) -> {
+                    if (key < row) {
+                        moved.put(key, value);
+                    } else if (key > row) {
+                        moved.put(key - 1, value);
+                    }
+                });
+                overflow.clear();
+                overflow.putAll(moved);
+            }
+        }
+
+        // drops the side values of rows at or after size
+        void truncate(int size) {
+            if (!overflow.isEmpty()) {
+                overflow.keySet().removeIf(row -> row >= size);
+            }
+        }
+
+        void grow(int capacity) {
+            unscaled = Arrays.copyOf(unscaled, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+    }
+}
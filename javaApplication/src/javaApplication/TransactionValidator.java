@@ -1,29 +1,79 @@
 package javaApplication;
 
+import java.math.BigDecimal;
 import java.util.regex.Pattern;
 
 
 public class TransactionValidator {
+
+    private static final Pattern ITEM_CODE_PATTERN = Pattern.compile("^[a-zA-Z0-9_]+$"); //numbers,letters or "_"
+
+    //What rule 1 compares the stored checksum with
+    public enum ChecksumMode {
+        // the line rebuilt from the record (recalculated line total), also used for edited records
+        RECONSTRUCTED_LINE,
+        // the first 7 fields as they were in the imported file, like pos.py calculates it
+        SOURCE_LINE
+    }
+
+    //The validation rules, in the order failedRule reports them
+    public enum Rule {
+        ITEM_CODE,
+        SALE_PRICE,
+        CHECKSUM
+    }
+
     public static boolean validateTransaction(TransactionRecord record) {
+        return validateTransaction(record, calculateChecksum(record));
+    }
+
+    //Validation with an already calculated checksum for rule 1
+    public static boolean validateTransaction(TransactionRecord record, int calculatedChecksum) {
         // Rule 1- Checksum
-        int calculatedChecksum = calculateChecksum(record.toTransactionLine());
         if (calculatedChecksum != record.getOriginalChecksum()) {
-            return false;
+            return failed(record);
         }
 
         // Rule 2- Item code with no special characters
         if (!isValidItemCode(record.getItemCode())) {
-            return false;
+            return failed(record);
         }
 
         // Rule 3: price > 0
-        if (record.getSalePrice().compareTo(java.math.BigDecimal.ZERO) < 0) {
-            return false;
+        if (record.getSalePriceMoney().signum() < 0) {
+            return failed(record);
         }
 
         return true;
     }
 
+    private static boolean failed(TransactionRecord record) {
+        if (Metrics.isEnabled()) {
+            PipelineMetrics.validationFailed(failedRule(record.getItemCode(), record.getSalePriceMoney().signum() < 0));
+        }
+        return false;
+    }
+
+    //The rule an invalid record failed, null for a valid one. The checksum can't be recalculated from the
+    //record in every checksum mode, so item code and sale price come first and a record failing neither
+    //failed the checksum.
+    public static Rule failedRule(TransactionRecord record) {
+        if (record.isValid()) {
+            return null;
+        }
+        return failedRule(record.getItemCode(), record.getSalePriceMoney().signum() < 0);
+    }
+
+    static Rule failedRule(String itemCode, boolean negativeSalePrice) {
+        if (!isValidItemCode(itemCode)) {
+            return Rule.ITEM_CODE;
+        }
+        if (negativeSalePrice) {
+            return Rule.SALE_PRICE;
+        }
+        return Rule.CHECKSUM;
+    }
+
     //checksum
     public static int calculateChecksum(String transactionLine) {
         int uppercaseCount = 0;
@@ -43,10 +93,72 @@ public class TransactionValidator {
         return uppercaseCount + lowercaseCount + numberCount;
     }
 
+    //Same as calculateChecksum(record.toTransactionLine()) without building the line
+    public static int calculateChecksum(TransactionRecord record) {
+        return textChecksum(record.getBillNumber())
+                + textChecksum(record.getItemCode())
+                + decimalChecksum(record.getInternalPriceMoney())
+                + decimalChecksum(record.getDiscountMoney())
+                + decimalChecksum(record.getSalePriceMoney())
+                + digitCount(record.getQuantity())
+                + decimalChecksum(record.getLineTotalMoney());
+    }
+
+    static int textChecksum(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isUpperCase(c) || Character.isLowerCase(c) || Character.isDigit(c) || c == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // counted characters of BigDecimal.toString(), which only depends on precision and scale
+    static int decimalChecksum(BigDecimal value) {
+        return decimalChecksum(value.precision(), value.scale());
+    }
+
+    static int decimalChecksum(Money value) {
+        if (value.isCompact()) {
+            return decimalChecksum(value.unscaledValue(), value.scale());
+        }
+        return decimalChecksum(value.toBigDecimal());
+    }
+
+    // same for the BigDecimal with the given unscaled value and scale
+    static int decimalChecksum(long unscaled, int scale) {
+        return decimalChecksum(digitCount(unscaled), scale);
+    }
+
+    private static int decimalChecksum(int precision, int scale) {
+        long adjusted = (long) precision - 1 - scale;
+
+        if (scale == 0) {
+            return precision;
+        }
+        if (scale > 0 && adjusted >= -6) {
+            // plain notation, "0.00ddd" when all digits are in the fraction
+            return precision > scale ? precision + 1 : scale + 2;
+        }
+        // scientific notation: digits, '.' after the first one, 'E' and the exponent digits
+        return precision + (precision > 1 ? 1 : 0) + 1 + digitCount(Math.abs(adjusted));
+    }
+
+    // digits of the value without its sign
+    static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10 || value <= -10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
 
     //check if the itemcode is valid
     public static boolean isValidItemCode(String itemCode) {
-        Pattern pattern = Pattern.compile("^[a-zA-Z0-9_]+$"); //numbers,letters or "_"
-        return pattern.matcher(itemCode).matches();
+        return ITEM_CODE_PATTERN.matcher(itemCode).matches();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.BatchMain;
+import javaApplication.TaxFileGenerator;
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class BatchMainTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        return BatchMain.run(args, new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    private List<String> outputLines() {
+        return out.toString().lines().toList();
+    }
+
+    private Path generate(Path file, long seed, int rows) throws IOException {
+        TaxFileGenerator generator = new TaxFileGenerator(seed);
+        generator.setRowCount(rows);
+        generator.setZeroProfitRatio(0.2);
+        generator.generate(file.toString());
+        return file;
+    }
+
+    // the value of a number or null field of a json line
+    private static String field(String json, String name) {
+        int start = json.indexOf("\"" + name + "\":") + name.length() + 3;
+        int end = start;
+        while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}') {
+            end++;
+        }
+        return json.substring(start, end);
+    }
+
+    @Test
+    void directoryOfTaxFiles() throws IOException {
+        Path taxDirectory = Files.createDirectory(tempDir.resolve("tax"));
+        Path first = generate(taxDirectory.resolve("tax_20240101_120000.csv"), 1, 1_000);
+        Path second = generate(taxDirectory.resolve("tax_20240102_120000.csv"), 2, 2_500);
+        Files.writeString(taxDirectory.resolve("notes.txt"), "not a tax file");
+
+        assertEquals(0, run("--rate", "15", taxDirectory.toString()));
+
+        List<String> lines = outputLines();
+        assertEquals(3, lines.size(), out.toString());
+        assertTrue(lines.get(0).startsWith("{\"file\":\"" + first + "\""), lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"file\":\"" + second + "\""), lines.get(1));
+        assertEquals("null", field(lines.get(2), "file"));
+
+        List<TransactionRecord> all = new ArrayList<>();
+        long[] records = {1_000, 2_500};
+        Path[] files = {first, second};
+        for (int i = 0; i < 2; i++) {
+            List<TransactionRecord> fileRecords = TransactionImporter.importFromCSV(files[i].toString());
+            all.addAll(fileRecords);
+            TaxProcessor processor = new TaxProcessor();
+            processor.setTransactions(fileRecords);
+            processor.setTaxRate(new BigDecimal("15"));
+            assertEquals(String.valueOf(records[i]), field(lines.get(i), "records"));
+            assertEquals(String.valueOf(processor.getValidCount()), field(lines.get(i), "valid"));
+            assertEquals(processor.calculateFinalTax(), new BigDecimal(field(lines.get(i), "finalTax")));
+            assertEquals("0", field(lines.get(i), "zeroProfitDeleted"));
+        }
+
+        TaxProcessor combined = new TaxProcessor();
+        combined.setTransactions(all);
+        combined.setTaxRate(new BigDecimal("15"));
+        assertEquals("3500", field(lines.get(2), "records"));
+        assertEquals(String.valueOf(combined.getInvalidCount()), field(lines.get(2), "invalid"));
+        assertEquals(combined.getTotalProfit(), new BigDecimal(field(lines.get(2), "totalProfit")));
+        assertEquals(combined.calculateFinalTax(), new BigDecimal(field(lines.get(2), "finalTax")));
+    }
+
+    @Test
+    void purgeToOutputDirectoryAsCsv() throws IOException {
+        Path file = generate(tempDir.resolve("tax.csv"), 3, 2_000);
+        Path outputDir = Files.createDirectory(tempDir.resolve("out"));
+        long zeroProfit = TransactionImporter.importFromCSV(file.toString()).stream()
+                .filter(record -> record.getProfit().signum() == 0).count();
+
+        assertEquals(0, run("--rate", "10", "--purge-zero-profit", "--output-dir", outputDir.toString(),
+                "--format", "csv", file.toString()));
+
+        List<String> lines = outputLines();
+        assertEquals(3, lines.size());
+        assertEquals("File,Records,Valid,Invalid,Zero Profit Deleted,Total Profit,Total Loss,Tax Rate,Final Tax,"
+                + "Millis,Error", lines.get(0));
+        String[] fields = lines.get(1).split(",", -1);
+        assertEquals(file.toString(), fields[0]);
+        assertEquals("2000", fields[1]);
+        assertEquals(String.valueOf(zeroProfit), fields[4]);
+        assertEquals("", fields[10]);
+        assertTrue(lines.get(2).startsWith("TOTAL,2000,"));
+
+        List<TransactionRecord> written = TransactionImporter.importFromCSV(outputDir.resolve("tax.csv").toString());
+        assertEquals(2_000 - zeroProfit, written.size());
+        assertTrue(written.stream().noneMatch(record -> record.getProfit().signum() == 0));
+        // the source file is not changed
+        assertEquals(2_000, TransactionImporter.importFromCSV(file.toString()).size());
+    }
+
+    @Test
+    void failedFilesAreReportedAndTheRestIsProcessed() throws IOException {
+        Path file = generate(tempDir.resolve("tax.csv"), 4, 100);
+        Path missing = tempDir.resolve("missing.csv");
+
+        assertEquals(1, run("--rate", "10", missing.toString(), file.toString()));
+
+        List<String> lines = outputLines();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"file\":\"" + missing + "\",\"error\":\""), lines.get(0));
+        assertEquals("100", field(lines.get(1), "records"));
+        assertEquals("100", field(lines.get(2), "records"));
+    }
+
+    @Test
+    void usageErrors() {
+        assertEquals(2, run("tax.csv"));
+        assertTrue(err.toString().contains("No tax rate given"));
+        assertEquals(2, run("--rate", "ten", "tax.csv"));
+        assertEquals(2, run("--rate", "10"));
+        assertEquals(2, run("--rate", "10", "--format", "xml", "tax.csv"));
+        assertEquals(2, run("--rate", "10", "--unknown", "tax.csv"));
+        assertEquals(2, run("--rate"));
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    void runsWithoutLoadingJavaFX() throws IOException, InterruptedException {
+        Path file = generate(tempDir.resolve("tax.csv"), 5, 100);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Djava.awt.headless=true", "-verbose:class",
+                "-cp", System.getProperty("java.class.path"), "javaApplication.BatchMain",
+                "--rate", "10", "--metrics", file.toString())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+        assertEquals(0, process.exitValue(), output);
+        assertTrue(output.contains("\"records\":100"), output);
+        assertTrue(output.contains("import.rows count=100"), output);
+        assertFalse(output.contains("javafx."), "JavaFX classes were loaded");
+        assertTrue(output.contains("javaApplication.BatchMain"));
+    }
+}
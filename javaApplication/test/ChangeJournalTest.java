@@ -0,0 +1,260 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.ChangeJournal;
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionExporter;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class ChangeJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String csvFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = tempDir.resolve("transactions.csv").toString();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            writer.write("B001,ITEM123,100,10,150,2,280,23\n");
+            writer.write("B002,ITEM456,75,0,75,1,75,17\n");
+            writer.write("B003,ITEM789,200,20,150,1,130,25\n");
+            writer.write("B004,ITEM@456,50,5,70,3,195,21\n");
+            writer.write("B005,ITEM5,10,0,12,1,12,14\n");
+        }
+    }
+
+    private TaxProcessor importWithJournal(List<ChangeJournal> opened) throws IOException {
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSV(csvFile));
+        opened.add(ChangeJournal.open(csvFile, processor, 3));
+        return processor;
+    }
+
+    private static void assertSameRecords(TaxProcessor expected, TaxProcessor actual) {
+        assertEquals(expected.getTransactions().toString(), actual.getTransactions().toString());
+    }
+
+    private static TransactionRecord edit(String billNumber) {
+        return new TransactionRecord(billNumber, "ITEM9", new BigDecimal("1.5"), BigDecimal.ZERO,
+                new BigDecimal("2.25"), 4, BigDecimal.ZERO, 0);
+    }
+
+    @Test
+    void replaysEdits() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        ChangeJournal journal = journals.get(0);
+
+        processor.updateRecord(2, edit("B003-EDIT"));
+        journal.recordUpdate(2, processor.getTransactions().get(2));
+        processor.deleteRecord(0);
+        journal.recordDelete(0);
+        assertEquals(2, journal.size());
+        assertFalse(journal.needsCompaction());
+        journal.close();
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+        assertEquals(processor.calculateFinalTax(), reopened.calculateFinalTax());
+    }
+
+    @Test
+    void journalOnlyExistsWithEntries() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        ChangeJournal journal = journals.get(0);
+        assertFalse(Files.exists(journal.getJournalPath()));
+
+        processor.deleteRecord(0);
+        journal.recordDelete(0);
+        assertEquals(2, Files.readAllLines(journal.getJournalPath()).size());
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.recordDelete(0));
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+        assertEquals(2, Files.readAllLines(journal.getJournalPath()).size());
+
+        // a journal left with just its header is removed on open
+        Files.write(journal.getJournalPath(), Files.readAllLines(journal.getJournalPath()).subList(0, 1));
+        importWithJournal(journals);
+        journals.get(2).close();
+        assertFalse(Files.exists(journal.getJournalPath()));
+    }
+
+    @Test
+    void compaction() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        ChangeJournal journal = journals.get(0);
+
+        processor.updateRecord(1, edit("B002-EDIT"));
+        journal.recordUpdate(1, processor.getTransactions().get(1));
+        processor.deleteZeroProfitRecords();
+        journal.recordDeleteZeroProfit();
+        processor.deleteRecord(2);
+        journal.recordDelete(2);
+        assertTrue(journal.needsCompaction());
+
+        processor.compact();
+        journal.compact(new ArrayList<>(processor.getTransactions()));
+        assertEquals(0, journal.size());
+        // nothing left to journal
+        assertFalse(Files.exists(journal.getJournalPath()));
+        journal.close();
+
+        // the file holds the edits now
+        TaxProcessor reimported = new TaxProcessor();
+        reimported.setTransactions(TransactionImporter.importFromCSV(csvFile));
+        assertSameRecords(processor, reimported);
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+    }
+
+    @Test
+    void compactionInterrupted() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        ChangeJournal journal = journals.get(0);
+
+        processor.deleteRecord(4);
+        journal.recordDelete(4);
+
+        // background compaction wrote the file, but the journal wasn't started over
+        journal.startCompaction();
+        List<TransactionRecord> written = new ArrayList<>(processor.getTransactions());
+        processor.updateRecord(0, edit("B001-EDIT"));
+        journal.recordUpdate(0, processor.getTransactions().get(0));
+        TransactionExporter.exportToCSVAtomically(written, csvFile);
+        journal.close();
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+    }
+
+    @Test
+    void compactionNotWritten() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        ChangeJournal journal = journals.get(0);
+
+        processor.deleteRecord(1);
+        journal.recordDelete(1);
+        journal.startCompaction();
+        journal.cancelCompaction();
+        processor.deleteRecord(1);
+        journal.recordDelete(1);
+        journal.close();
+
+        // the file is unchanged, so all entries apply
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+    }
+
+    @Test
+    void ignoresJournalOfChangedFile() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        processor.deleteRecord(0);
+        journals.get(0).recordDelete(0);
+        journals.get(0).close();
+
+        Files.writeString(Path.of(csvFile), "B009,ITEM9,1,0,2,1,2,10\n", StandardOpenOption.APPEND);
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertEquals(6, reopened.size());
+        assertEquals(0, journals.get(1).size());
+    }
+
+    @Test
+    void keepsJournalOfTouchedFileAside() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        processor.deleteRecord(0);
+        journals.get(0).recordDelete(0);
+        journals.get(0).close();
+        List<String> entries = Files.readAllLines(journals.get(0).getJournalPath());
+
+        // same content, only a new modification time, like after a copy or checkout
+        Path file = Path.of(csvFile);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertEquals(5, reopened.size());
+        assertEquals(0, journals.get(1).size());
+        Path stale = journals.get(1).getStaleJournalPath();
+        assertEquals(Path.of(csvFile + ChangeJournal.SUFFIX + ChangeJournal.STALE_SUFFIX), stale);
+        assertEquals(entries, Files.readAllLines(stale));
+        assertTrue(entries.contains("D,0"));
+
+        // a second stale journal doesn't replace the first
+        journals.get(1).getJournalPath().toFile().delete();
+        Files.write(journals.get(1).getJournalPath(), entries);
+        TaxProcessor again = importWithJournal(journals);
+        journals.get(2).close();
+        assertEquals(5, again.size());
+        assertEquals(Path.of(stale + ".2"), journals.get(2).getStaleJournalPath());
+        assertEquals(entries, Files.readAllLines(stale));
+    }
+
+    @Test
+    void compactAndClose() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        processor.deleteRecord(0);
+        journals.get(0).recordDelete(0);
+
+        journals.get(0).compactAndClose(processor.getTransactions());
+
+        // other readers of the file see the edit
+        assertEquals(4, TransactionImporter.importFromCSV(csvFile).size());
+        assertFalse(Files.exists(journals.get(0).getJournalPath()));
+
+        // without edits the file isn't written
+        TaxProcessor reopened = importWithJournal(journals);
+        long modified = Files.getLastModifiedTime(Path.of(csvFile)).toMillis();
+        Files.setLastModifiedTime(Path.of(csvFile), FileTime.fromMillis(modified - 60_000));
+        journals.get(1).compactAndClose(reopened.getTransactions());
+        assertEquals(modified - 60_000, Files.getLastModifiedTime(Path.of(csvFile)).toMillis());
+    }
+
+    @Test
+    void ignoresCutOffEntry() throws IOException {
+        List<ChangeJournal> journals = new ArrayList<>();
+        TaxProcessor processor = importWithJournal(journals);
+        processor.deleteRecord(0);
+        journals.get(0).recordDelete(0);
+        journals.get(0).close();
+
+        Files.writeString(journals.get(0).getJournalPath(), "D,", StandardOpenOption.APPEND);
+
+        TaxProcessor reopened = importWithJournal(journals);
+        journals.get(1).close();
+        assertSameRecords(processor, reopened);
+    }
+}
@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.DirectoryImporter;
+import javaApplication.TaxFileGenerator;
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionValidator.ChecksumMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class DirectoryImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Path> generateFiles(int count) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path file = tempDir.resolve("tax_2024010" + (i + 1) + "_120000.csv");
+            TaxFileGenerator generator = new TaxFileGenerator(i);
+            generator.setRowCount(500 + i * 300);
+            generator.generate(file.toString());
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void assertSameRecords(List<TransactionRecord> expected, List<TransactionRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toTransactionLine(), actual.get(i).toTransactionLine());
+            assertEquals(expected.get(i).getOriginalChecksum(), actual.get(i).getOriginalChecksum());
+            assertEquals(expected.get(i).isValid(), actual.get(i).isValid());
+        }
+    }
+
+    @Test
+    void mergesFilesInNameOrder() throws IOException {
+        List<Path> files = generateFiles(5);
+        Files.writeString(tempDir.resolve("readme.txt"), "not a tax file");
+        Files.createDirectory(tempDir.resolve("old.csv"));
+
+        assertEquals(files, DirectoryImporter.listTaxFiles(tempDir));
+        DirectoryImporter.Result result = DirectoryImporter.importDirectory(tempDir.toString());
+
+        List<TransactionRecord> expected = new ArrayList<>();
+        for (Path file : files) {
+            expected.addAll(TransactionImporter.importFromCSV(file.toString()));
+        }
+        TaxProcessor processor = result.getProcessor();
+        assertSameRecords(expected, processor.getTransactions());
+
+        TaxProcessor sequential = new TaxProcessor();
+        sequential.setTransactions(expected);
+        processor.setTaxRate(new BigDecimal("12"));
+        sequential.setTaxRate(new BigDecimal("12"));
+        assertEquals(sequential.getValidCount(), processor.getValidCount());
+        assertEquals(sequential.getTotalProfit(), processor.getTotalProfit());
+        assertEquals(sequential.getTotalLoss(), processor.getTotalLoss());
+        assertEquals(sequential.calculateFinalTax(), processor.calculateFinalTax());
+        assertTrue(result.getFailedFiles().isEmpty());
+    }
+
+    @Test
+    void perFileBreakdown() throws IOException {
+        List<Path> files = generateFiles(3);
+        DirectoryImporter.Result result = DirectoryImporter.importFiles(files);
+
+        assertEquals(3, result.getFiles().size());
+        long bytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            DirectoryImporter.FileResult fileResult = result.getFiles().get(i);
+            TaxProcessor alone = new TaxProcessor();
+            alone.setTransactions(TransactionImporter.importFromCSV(files.get(i).toString()));
+            alone.setTaxRate(new BigDecimal("20"));
+
+            assertEquals(files.get(i), fileResult.getFile());
+            assertNull(fileResult.getError());
+            assertEquals(500 + i * 300, fileResult.getRecords());
+            assertEquals(alone.getValidCount(), fileResult.getValidCount());
+            assertEquals(alone.getInvalidCount(), fileResult.getInvalidCount());
+            assertEquals(alone.getTotalProfit(), fileResult.getTotalProfit());
+            assertEquals(alone.getTotalLoss(), fileResult.getTotalLoss());
+            assertEquals(alone.calculateFinalTax(), fileResult.calculateFinalTax(new BigDecimal("20")));
+            assertEquals(Files.size(files.get(i)), fileResult.getBytes());
+            assertTrue(fileResult.getNanos() > 0);
+            bytes += fileResult.getBytes();
+        }
+        assertEquals(bytes, result.getBytes());
+    }
+
+    @Test
+    void virtualThreadsAndSourceChecksums() throws IOException {
+        List<Path> files = generateFiles(4);
+        DirectoryImporter.Result result;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            result = DirectoryImporter.importFiles(files, executor, ChecksumMode.SOURCE_LINE);
+        }
+
+        List<TransactionRecord> expected = new ArrayList<>();
+        for (Path file : files) {
+            expected.addAll(TransactionImporter.importFromCSV(file.toString(), ChecksumMode.SOURCE_LINE));
+        }
+        assertSameRecords(expected, result.getProcessor().getTransactions());
+    }
+
+    @Test
+    void failedFilesDontStopTheOthers() throws IOException {
+        List<Path> files = new ArrayList<>(generateFiles(2));
+        Path broken = tempDir.resolve("tax_20240105_120000.csv");
+        Files.writeString(broken, "Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,"
+                + "Checksum\n20240105_0001,ITEM1,abc,0.00,1.00,1,1.00,20\n");
+        Path missing = tempDir.resolve("tax_20240106_120000.csv");
+        files.add(1, broken);
+        files.add(missing);
+
+        DirectoryImporter.Result result = DirectoryImporter.importFiles(files);
+
+        assertEquals(4, result.getFiles().size());
+        assertEquals(List.of(broken, missing),
+                result.getFailedFiles().stream().map(DirectoryImporter.FileResult::getFile).toList());
+        assertInstanceOf(NumberFormatException.class, result.getFiles().get(1).getError());
+        assertInstanceOf(IOException.class, result.getFiles().get(3).getError());
+        assertEquals(0, result.getFiles().get(1).getRecords());
+        assertEquals(500 + 800, result.getProcessor().size());
+    }
+
+    @Test
+    void emptyDirectory() throws IOException {
+        DirectoryImporter.Result result = DirectoryImporter.importDirectory(tempDir.toString());
+        assertEquals(0, result.getProcessor().size());
+        assertTrue(result.getFiles().isEmpty());
+        assertEquals(0, result.getProcessor().calculateFinalTax().signum());
+    }
+}
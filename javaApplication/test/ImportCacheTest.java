@@ -0,0 +1,190 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.ImportCache;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionValidator.ChecksumMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class ImportCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String HEADER = "BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n";
+
+    private Path writeFile(String name, String lines) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, (HEADER + lines).getBytes());
+        return file;
+    }
+
+    private static List<String> strings(List<TransactionRecord> records) {
+        return records.stream().map(TransactionRecord::toString).collect(Collectors.toList());
+    }
+
+    private long entryCount(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(file -> file.toString().endsWith(".snapshot")).count();
+        }
+    }
+
+    @Test
+    void unchangedFileLoadsFromCache() throws IOException {
+        Path file = writeFile("cached.csv", "B001,ITEM123,100,10,150,2,290,50\n"
+                + "B002,ITEM@789,200,20,150,1,130,45\n"
+                + "B003,ITEM456,75.50,0,1E+2,1,100,40\n");
+        Path cacheDir = tempDir.resolve("cache");
+        ImportCache cache = new ImportCache(cacheDir.toString());
+        List<String> expected = strings(TransactionImporter.importFromCSV(file.toString()));
+
+        assertEquals(expected, strings(cache.importFromCSV(file.toString())));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, entryCount(cacheDir));
+
+        assertEquals(expected, strings(cache.importFromCSV(file.toString())));
+        assertEquals(1, cache.getHitCount());
+
+        // checksum mode changes validity, it has its own entry
+        List<String> source = strings(TransactionImporter.importFromCSV(file.toString(), ChecksumMode.SOURCE_LINE));
+        assertEquals(source, strings(cache.importFromCSV(file.toString(), ChecksumMode.SOURCE_LINE)));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, entryCount(cacheDir));
+
+        cache.invalidate(file.toString());
+        assertEquals(0, entryCount(cacheDir));
+        assertEquals(expected, strings(cache.importFromCSV(file.toString())));
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void changedFileIsImportedAgain() throws IOException {
+        Path file = writeFile("changed.csv", "B001,ITEM123,100,10,150,2,290,50\n");
+        Path cacheDir = tempDir.resolve("cache");
+        ImportCache cache = new ImportCache(cacheDir.toString());
+        FileTime modified = Files.getLastModifiedTime(file);
+        cache.importFromCSV(file.toString());
+
+        // same size and modification time, different content
+        Files.write(file, (HEADER + "B001,ITEM124,100,10,150,2,290,50\n").getBytes());
+        Files.setLastModifiedTime(file, modified);
+        assertEquals("ITEM124", cache.importFromCSV(file.toString()).get(0).getItemCode());
+        assertEquals(2, cache.getMissCount());
+
+        Files.write(file, "B002,ITEM456,75,0,75,1,75,40\n".getBytes(), StandardOpenOption.APPEND);
+        assertEquals(2, cache.importFromCSV(file.toString()).size());
+        assertEquals(3, cache.getMissCount());
+        // only the entry of the current content is kept
+        assertEquals(1, entryCount(cacheDir));
+    }
+
+    @Test
+    void damagedEntryIsReplaced() throws IOException {
+        Path file = writeFile("damaged.csv", "B001,ITEM123,100,10,150,2,290,50\n");
+        Path cacheDir = tempDir.resolve("cache");
+        ImportCache cache = new ImportCache(cacheDir.toString());
+        cache.importFromCSV(file.toString());
+
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            Path entry = files.filter(path -> path.toString().endsWith(".snapshot")).findFirst().get();
+            byte[] bytes = Files.readAllBytes(entry);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(entry, bytes);
+        }
+
+        assertEquals(strings(TransactionImporter.importFromCSV(file.toString())),
+                strings(cache.importFromCSV(file.toString())));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, entryCount(cacheDir));
+        cache.importFromCSV(file.toString());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        Path first = writeFile("first.csv", "B001,ITEM123,100,10,150,2,290,50\n");
+        Path second = writeFile("second.csv", "B002,ITEM456,75,0,75,1,75,40\n");
+        Path third = writeFile("third.csv", "B003,ITEM789,50,0,60,1,60,40\n");
+        Path cacheDir = tempDir.resolve("cache");
+
+        ImportCache unbounded = new ImportCache(cacheDir.toString());
+        unbounded.importFromCSV(first.toString());
+        long entrySize = unbounded.size();
+
+        // room for two entries
+        ImportCache cache = new ImportCache(cacheDir.toString(), entrySize * 2 + entrySize / 2);
+        cache.importFromCSV(second.toString());
+        cache.invalidate(first.toString());
+        cache.importFromCSV(first.toString());
+        assertEquals(2, entryCount(cacheDir));
+
+        // second is the least recently used one
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path entry : (Iterable<Path>) files::iterator) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+            }
+        }
+        cache.importFromCSV(first.toString());
+        cache.importFromCSV(third.toString());
+
+        assertEquals(2, entryCount(cacheDir));
+        long hits = cache.getHitCount();
+        cache.importFromCSV(first.toString());
+        cache.importFromCSV(third.toString());
+        assertEquals(hits + 2, cache.getHitCount());
+        cache.importFromCSV(second.toString());
+        assertEquals(hits + 2, cache.getHitCount());
+    }
+
+    @Test
+    void progressAndCancel() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1500; i++) {
+            lines.append("B").append(i).append(",ITEM123,100,10,150,2,290,50\n");
+        }
+        Path file = writeFile("progress.csv", lines.toString());
+        Path cacheDir = tempDir.resolve("cache");
+        ImportCache cache = new ImportCache(cacheDir.toString());
+
+        // a cancelled import isn't stored
+        assertThrows(CancellationException.class, () -> cache.forEachRecord(file.toString(),
+                ChecksumMode.RECONSTRUCTED_LINE, record -> { }, (bytesRead, records) -> false));
+        assertEquals(0, entryCount(cacheDir));
+
+        List<TransactionRecord> records = new ArrayList<>();
+        List<Integer> reported = new ArrayList<>();
+        cache.forEachRecord(file.toString(), ChecksumMode.RECONSTRUCTED_LINE, records::add, (bytesRead, count) -> {
+            reported.add(count);
+            return true;
+        });
+        assertEquals(1500, records.size());
+        assertEquals(List.of(1000, 1500), reported);
+        assertEquals(1, entryCount(cacheDir));
+
+        // from the cache: all records, one report
+        long fileSize = Files.size(file);
+        records.clear();
+        reported.clear();
+        cache.forEachRecord(file.toString(), ChecksumMode.RECONSTRUCTED_LINE, records::add, (bytesRead, count) -> {
+            assertEquals(fileSize, bytesRead);
+            reported.add(count);
+            return true;
+        });
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1500, records.size());
+        assertEquals(List.of(1500), reported);
+    }
+}
@@ -0,0 +1,195 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.Metrics;
+import javaApplication.TaxFileGenerator;
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionExporter;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionValidator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void enable() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    void disable() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    private static long count(String name) {
+        return Metrics.counter(name).get();
+    }
+
+    @Test
+    void countersOnlyCountWhileEnabled() {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        assertSame(counter, Metrics.counter("test.counter"));
+        counter.increment();
+        counter.add(4);
+        Metrics.setEnabled(false);
+        counter.add(10);
+        Metrics.histogram("test.histogram").record(10);
+        assertEquals(0, Metrics.startTime());
+
+        assertEquals(5, counter.get());
+        assertEquals(0, Metrics.histogram("test.histogram").getCount());
+    }
+
+    @Test
+    void histogramPercentiles() {
+        Metrics.Histogram histogram = Metrics.histogram("test.latency");
+        Random random = new Random(1);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // from nanoseconds to seconds
+            values[i] = (long) Math.pow(10, 1 + random.nextDouble() * 8);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getPercentile(percentile);
+            // the bucket's highest value, at most 1/64 above
+            assertTrue(actual >= expected && actual <= expected + expected / 64, percentile + ": " + actual);
+        }
+    }
+
+    @Test
+    void histogramSmallValuesAreExact() {
+        Metrics.Histogram histogram = Metrics.histogram("test.small");
+        for (int value = 0; value < 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        assertEquals(0, histogram.getMin());
+        assertEquals(49, histogram.getPercentile(50));
+        assertEquals(99, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    void pipelineMetrics() throws IOException {
+        Path file = tempDir.resolve("tax.csv");
+        TaxFileGenerator generator = new TaxFileGenerator(3);
+        generator.setRowCount(10_000);
+        generator.setInvalidRatio(0.3);
+        generator.generate(file.toString());
+        Metrics.reset();
+
+        List<TransactionRecord> records = TransactionImporter.importFromCSV(file.toString());
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(records);
+        processor.setTaxRate(new BigDecimal("20"));
+        processor.calculateFinalTax();
+        TransactionExporter.exportToCSV(records, tempDir.resolve("out.csv").toString());
+
+        long invalid = records.stream().filter(record -> !record.isValid()).count();
+        assertEquals(1, count("import.files"));
+        assertEquals(10_000, count("import.rows"));
+        assertEquals(Files.size(file), count("import.bytes"));
+        assertEquals(1, Metrics.histogram("import.time").getCount());
+        assertEquals(invalid, count("validation.failures.checksum") + count("validation.failures.itemCode")
+                + count("validation.failures.salePrice"));
+        assertEquals(records.stream().filter(record -> TransactionValidator.failedRule(record)
+                == TransactionValidator.Rule.ITEM_CODE).count(), count("validation.failures.itemCode"));
+        assertTrue(count("validation.failures.checksum") > 0);
+        assertTrue(count("validation.failures.salePrice") > 0);
+        assertEquals(1, Metrics.histogram("tax.time").getCount());
+        assertEquals(1, count("export.files"));
+        assertEquals(10_000, count("export.rows"));
+
+        StringBuilder dump = new StringBuilder();
+        Metrics.dump(dump);
+        List<String> lines = dump.toString().lines().collect(Collectors.toList());
+        assertTrue(lines.contains("import.rows count=10000"), dump.toString());
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("import.time count=1 min=")), dump.toString());
+        assertEquals(lines.stream().sorted().collect(Collectors.toList()), lines);
+    }
+
+    @Test
+    void flightRecorderEvents() throws IOException {
+        Metrics.setEnabled(false);
+        Path file = tempDir.resolve("tax.csv");
+        TaxFileGenerator generator = new TaxFileGenerator(5);
+        generator.setRowCount(2_000);
+        generator.setInvalidRatio(0.3);
+        generator.generate(file.toString());
+
+        Path recordingFile = tempDir.resolve("pipeline.jfr");
+        List<TransactionRecord> records;
+        try (Recording recording = new Recording()) {
+            recording.enable("javaApplication.Import");
+            recording.enable("javaApplication.Validation");
+            recording.enable("javaApplication.TaxCalculation");
+            recording.enable("javaApplication.Export");
+            recording.start();
+            records = TransactionImporter.importFromCSVParallel(file.toString());
+            TaxProcessor.calculateFinalTax(records.stream(), new BigDecimal("10"));
+            TransactionExporter.exportToCSV(records, tempDir.resolve("out.csv").toString());
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        RecordedEvent importEvent = event(events, "javaApplication.Import");
+        assertEquals(file.toString(), importEvent.getString("path"));
+        assertEquals("parallel", importEvent.getString("method"));
+        assertEquals(2_000, importEvent.getLong("rows"));
+        assertEquals(Files.size(file), importEvent.getLong("bytes"));
+        long invalid = records.stream().filter(record -> !record.isValid()).count();
+        assertEquals(invalid, importEvent.getLong("invalidRows"));
+
+        RecordedEvent validation = event(events, "javaApplication.Validation");
+        assertEquals(invalid, validation.getLong("checksumFailures") + validation.getLong("itemCodeFailures")
+                + validation.getLong("salePriceFailures"));
+        assertTrue(validation.getLong("itemCodeFailures") > 0);
+
+        RecordedEvent tax = event(events, "javaApplication.TaxCalculation");
+        assertEquals("stream", tax.getString("method"));
+        assertEquals(2_000, tax.getLong("records"));
+        assertEquals("10", tax.getString("taxRate"));
+
+        RecordedEvent export = event(events, "javaApplication.Export");
+        assertEquals(2_000, export.getLong("rows"));
+        assertEquals(Files.size(tempDir.resolve("out.csv")), export.getLong("bytes"));
+        // the metrics registry was off
+        assertEquals(0, count("import.rows"));
+    }
+
+    private static RecordedEvent event(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+class MoneyTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "150", "-12.5", "0.005", "1E+3", "922337203685477580.7", "99999999999999999999.99"})
+    void sameResultsAsBigDecimal(String value) {
+        BigDecimal decimal = new BigDecimal(value);
+        BigDecimal other = new BigDecimal("10.25");
+        Money money = Money.of(decimal);
+
+        // equals also compares the scale
+        assertEquals(decimal.add(other), money.add(Money.of(other)).toBigDecimal());
+        assertEquals(decimal.subtract(other), money.subtract(Money.of(other)).toBigDecimal());
+        assertEquals(decimal.multiply(new BigDecimal(7)), money.multiply(7).toBigDecimal());
+        assertEquals(decimal.abs(), money.abs().toBigDecimal());
+        assertEquals(decimal.compareTo(other), money.compareTo(Money.of(other)));
+        assertEquals(decimal.toString(), money.toString());
+    }
+
+    @Test
+    void overflow() {
+        Money large = Money.of(Long.MAX_VALUE, 2);
+        assertTrue(large.isCompact());
+
+        // doesn't fit a long any more, continues as BigDecimal
+        Money doubled = large.multiply(2);
+        assertFalse(doubled.isCompact());
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).multiply(new BigDecimal(2)), doubled.toBigDecimal());
+
+        Money sum = large.add(Money.of(1, 0));
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).add(BigDecimal.ONE), sum.toBigDecimal());
+    }
+
+    @Test
+    void productDifference() {
+        String[] values = {"0", "150", "-12.5", "0.005", "1E+3", "92233720368547758.07", "99999999999999999999.99"};
+        for (String a : values) {
+            for (String b : values) {
+                for (String c : values) {
+                    BigDecimal x = new BigDecimal(a);
+                    BigDecimal y = new BigDecimal(b);
+                    BigDecimal z = new BigDecimal(c);
+                    for (int quantity : new int[] {0, 1, 3, -2, Integer.MAX_VALUE}) {
+                        BigDecimal q = new BigDecimal(quantity);
+                        // equals also compares the scale
+                        assertEquals(x.multiply(q).subtract(y.multiply(q)), Money.productDifference(quantity,
+                                Money.of(x), Money.of(y)).toBigDecimal());
+                        assertEquals(x.multiply(q).subtract(y.multiply(q)).subtract(z.multiply(q)),
+                                Money.productDifference(quantity, Money.of(x), Money.of(y), Money.of(z))
+                                        .toBigDecimal());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sum() {
+        Money.Sum sum = new Money.Sum();
+        BigDecimal expected = BigDecimal.ZERO;
+        String[] values = {"1.5", "-0.25", "100", "0.001", "922337203685477580", "922337203685477580"};
+        for (String value : values) {
+            sum.add(Money.of(new BigDecimal(value)));
+            expected = expected.add(new BigDecimal(value));
+        }
+        assertEquals(expected, sum.total().toBigDecimal());
+
+        // an empty sum is BigDecimal.ZERO
+        assertEquals(BigDecimal.ZERO, new Money.Sum().total().toBigDecimal());
+    }
+}
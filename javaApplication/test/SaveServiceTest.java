@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.SaveService;
+import javaApplication.TransactionExporter;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+class SaveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> saved = new CopyOnWriteArrayList<>();
+    private final List<IOException> failures = new CopyOnWriteArrayList<>();
+
+    private final SaveService.Listener listener = new SaveService.Listener() {
+        @Override
+        public void saved(String filePath, int recordCount) {
+            saved.add(filePath + ":" + recordCount);
+        }
+
+        @Override
+        public void failed(String filePath, IOException e) {
+            failures.add(e);
+        }
+    };
+
+    private static List<TransactionRecord> records(int count) {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new TransactionRecord("B" + i, "ITEM" + i, new BigDecimal("10"),
+                    BigDecimal.ZERO, new BigDecimal("12.5"), 2, new BigDecimal("25.0"), 20));
+        }
+        return records;
+    }
+
+    @Test
+    void coalescesBurst() throws IOException {
+        Path file = tempDir.resolve("transactions.csv");
+        try (SaveService service = new SaveService(listener, 10_000)) {
+            for (int i = 1; i <= 50; i++) {
+                service.save(records(i), file.toString());
+            }
+            service.flush();
+        }
+
+        // only the latest records were written, once
+        assertEquals(List.of(file + ":50"), saved);
+        assertTrue(failures.isEmpty());
+
+        Path expected = tempDir.resolve("expected.csv");
+        TransactionExporter.exportToCSV(records(50), expected.toString());
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(file));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(2, files.count(), "temp file left behind");
+        }
+    }
+
+    @Test
+    void writesRecordsAsTheyWereWhenSaved() throws IOException {
+        Path file = tempDir.resolve("transactions.csv");
+        List<TransactionRecord> records = records(3);
+        Path expected = tempDir.resolve("expected.csv");
+        TransactionExporter.exportToCSV(records, expected.toString());
+        try (SaveService service = new SaveService(listener, 10_000)) {
+            service.save(records, file.toString());
+            // edited like the table does while the save is still waiting
+            records.get(1).setSalePrice(new BigDecimal("99"));
+            records.get(1).calculateLineTotal();
+            records.remove(2);
+            service.flush();
+        }
+
+        assertEquals(List.of(file + ":3"), saved);
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(file));
+    }
+
+    @Test
+    void runsJobAfterPendingSaves() throws Exception {
+        Path file = tempDir.resolve("transactions.csv");
+        List<String> seen = new CopyOnWriteArrayList<>();
+        try (SaveService service = new SaveService(listener, 10_000)) {
+            service.save(records(4), file.toString());
+            CompletableFuture<Void> job = service.runAfterPending(() -> {
+                seen.add(Thread.currentThread().getName());
+                seen.add(String.valueOf(TransactionImporter.importFromCSV(file.toString()).size()));
+            });
+            job.get(10, TimeUnit.SECONDS);
+
+            CompletableFuture<Void> failing = service.runAfterPending(() -> {
+                throw new IOException("disk full");
+            });
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> failing.get(10, TimeUnit.SECONDS));
+            assertEquals("disk full", failure.getCause().getMessage());
+        }
+
+        // the save was written before the job ran on the save thread
+        assertEquals(List.of("transaction-save", "4"), seen);
+        assertEquals(List.of(file + ":4"), saved);
+    }
+
+    @Test
+    void writesInBackground() throws Exception {
+        Path file = tempDir.resolve("transactions.csv");
+        try (SaveService service = new SaveService(listener, 0)) {
+            service.save(records(3), file.toString());
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (saved.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(List.of(file + ":3"), saved);
+        assertEquals(4, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void reportsFailure() {
+        Path file = tempDir.resolve("missing").resolve("transactions.csv");
+        try (SaveService service = new SaveService(listener)) {
+            service.save(records(1), file.toString());
+        }
+        assertEquals(1, failures.size());
+        assertTrue(saved.isEmpty());
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.TaxFileGenerator;
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+class TaxFileGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static TaxFileGenerator generator(long seed, long rows) {
+        TaxFileGenerator generator = new TaxFileGenerator(seed);
+        generator.setRowCount(rows);
+        return generator;
+    }
+
+    @Test
+    void linesLikePosGenerateTaxFile() throws IOException {
+        Path file = tempDir.resolve("tax.csv");
+        TaxFileGenerator generator = generator(7, 1000);
+        generator.setInvalidRatio(0);
+        generator.generate(file.toString());
+
+        String text = Files.readString(file, Charset.defaultCharset());
+        assertTrue(text.endsWith("\r\n"));
+        String[] lines = text.split("\r\n");
+        assertEquals("Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,Checksum", lines[0]);
+        assertEquals(1001, lines.length);
+        assertEquals("20240101_0001", lines[1].split(",")[0]);
+        assertEquals("20240101_0250", lines[1000].split(",")[0]);
+
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            String[] fields = line.split(",");
+            assertEquals(8, fields.length);
+            // checksum of the first 7 fields, line total = (sale price - discount) * quantity
+            assertEquals(TransactionValidator.calculateChecksum(line.substring(0, line.lastIndexOf(','))),
+                    Integer.parseInt(fields[7]), line);
+            assertEquals(new BigDecimal(fields[4]).subtract(new BigDecimal(fields[3]))
+                    .multiply(new BigDecimal(fields[5])), new BigDecimal(fields[6]), line);
+            assertEquals(2, new BigDecimal(fields[2]).scale());
+        }
+
+        List<TransactionRecord> records = TransactionImporter.importFromCSV(file.toString());
+        assertEquals(1000, records.size());
+        assertTrue(records.stream().allMatch(TransactionRecord::isValid));
+    }
+
+    @Test
+    void sameSeedSameFile() throws IOException {
+        Path first = tempDir.resolve("first.csv");
+        Path second = tempDir.resolve("second.csv");
+        Path other = tempDir.resolve("other.csv");
+        // more than one chunk, generated on different pools
+        long rows = 3L * 64 * 1024 + 17;
+        generator(42, rows).generate(first.toString(), new ForkJoinPool(1));
+        generator(42, rows).generate(second.toString(), new ForkJoinPool(4));
+        generator(43, rows).generate(other.toString());
+
+        byte[] bytes = Files.readAllBytes(first);
+        assertArrayEquals(bytes, Files.readAllBytes(second));
+        assertFalse(Arrays.equals(bytes, Files.readAllBytes(other)));
+        assertEquals(rows, TransactionImporter.importFromCSV(first.toString()).size());
+    }
+
+    @Test
+    void ratiosAndItemCount() throws IOException {
+        Path file = tempDir.resolve("tax.csv");
+        TaxFileGenerator generator = generator(1, 100_000);
+        generator.setInvalidRatio(0.2);
+        generator.setZeroProfitRatio(0.3);
+        generator.setLossRatio(0.1);
+        generator.setItemCount(50);
+        generator.generate(file.toString());
+
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSV(file.toString()));
+        assertEquals(100_000, processor.size());
+        assertEquals(0.2, processor.getInvalidCount() / 100_000.0, 0.01);
+
+        Set<String> itemCodes = new HashSet<>();
+        int zeroProfit = 0;
+        int loss = 0;
+        for (TransactionRecord record : processor.getValidTransactions()) {
+            itemCodes.add(record.getItemCode());
+            zeroProfit += record.getProfit().signum() == 0 ? 1 : 0;
+            loss += record.getProfit().signum() < 0 ? 1 : 0;
+        }
+        assertEquals(50, itemCodes.size());
+        assertEquals(0.3, zeroProfit / 100_000.0, 0.01);
+        assertEquals(0.1, loss / 100_000.0, 0.01);
+    }
+
+    @Test
+    void billNumbersMoveToTheNextDay() throws IOException {
+        Path file = tempDir.resolve("tax.csv");
+        generator(1, 9999 * 4 + 1).generate(file.toString());
+
+        List<TransactionRecord> records = TransactionImporter.importFromCSV(file.toString());
+        assertEquals("20240101_9999", records.get(9999 * 4 - 1).getBillNumber());
+        assertEquals("20240102_0001", records.get(9999 * 4).getBillNumber());
+    }
+
+    @Test
+    void invalidSettings() {
+        TaxFileGenerator generator = new TaxFileGenerator(1);
+        assertThrows(IllegalArgumentException.class, () -> generator.setRowCount(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.setInvalidRatio(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.setZeroProfitRatio(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> generator.setItemCount(0));
+        generator.setInvalidRatio(0.6);
+        generator.setZeroProfitRatio(0.6);
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.generate(tempDir.resolve("tax.csv").toString()));
+    }
+}
@@ -9,6 +9,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 class TaxProcessorTest {
 
@@ -153,4 +154,219 @@ class TaxProcessorTest {
         assertEquals(expectedTax, actualTax);
     }
 
-}
\ No newline at end of file
+    @Test
+    void calculateFinalTaxAtAnotherRate() {
+        taxProcessor.setTaxRate(new BigDecimal("20"));
+
+        // another rate from the same totals, the processor's rate doesn't change
+        assertEquals(TaxProcessor.calculateFinalTax(taxProcessor.getTransactions().stream(), new BigDecimal("12.5")),
+                taxProcessor.calculateFinalTax(new BigDecimal("12.5")));
+        assertEquals(new BigDecimal("20"), taxProcessor.getTaxRate());
+        assertEquals(TaxProcessor.calculateFinalTax(taxProcessor.getTransactions().stream(), new BigDecimal("20")),
+                taxProcessor.calculateFinalTax());
+    }
+
+    @Test
+    void runningTotals() {
+        taxProcessor.setTaxRate(new BigDecimal("12.5"));
+
+        // loss with a larger scale than everything else, removing it has to bring the scale back
+        TransactionRecord precise = new TransactionRecord(
+                "B005", "ITEM5", new BigDecimal("10.125"),
+                new BigDecimal("0"), new BigDecimal("10"), 1,
+                new BigDecimal("10"), 0);
+        taxProcessor.updateRecord(3, precise);
+        assertTotalsMatchRecords();
+
+        taxProcessor.deleteRecord(0);
+        assertTotalsMatchRecords();
+
+        taxProcessor.deleteZeroProfitRecords();
+        assertTotalsMatchRecords();
+
+        taxProcessor.deleteRecord(taxProcessor.getTransactions().size() - 1);
+        assertTotalsMatchRecords();
+
+        taxProcessor.setTransactions(new ArrayList<>());
+        assertTotalsMatchRecords();
+        assertEquals(0, taxProcessor.getValidCount());
+    }
+
+    @Test
+    void runningTotalsAfterInPlaceEdits() {
+        taxProcessor.setTaxRate(new BigDecimal("10"));
+
+        // like the table's cell editors, the record is changed first and then updated at its own index
+        TransactionRecord record = taxProcessor.getTransactions().get(0);
+        record.setSalePrice(new BigDecimal("500"));
+        taxProcessor.updateRecord(0, record);
+        assertTotalsMatchRecords();
+
+        record = taxProcessor.getTransactions().get(2);
+        record.setQuantity(record.getQuantity() + 3);
+        record.setDiscount(new BigDecimal("1"));
+        taxProcessor.updateRecord(2, record);
+        assertTotalsMatchRecords();
+
+        // an edit that makes the record invalid takes it out of the totals
+        record.setItemCode("ITEM-3");
+        taxProcessor.updateRecord(2, record);
+        assertFalse(record.isValid());
+        assertTotalsMatchRecords();
+    }
+
+    private void assertTotalsMatchRecords() {
+        List<TransactionRecord> records = taxProcessor.getTransactions();
+        // equals also checks the scale
+        assertEquals(TaxProcessor.calculateFinalTax(records.stream(), taxProcessor.getTaxRate()),
+                taxProcessor.calculateFinalTax());
+        assertEquals(records.stream().filter(TransactionRecord::isValid).count(), taxProcessor.getValidCount());
+
+        BigDecimal totalProfit = BigDecimal.ZERO;
+        BigDecimal totalLoss = BigDecimal.ZERO;
+        for (TransactionRecord record : taxProcessor.getValidTransactions()) {
+            if (record.getProfit().compareTo(BigDecimal.ZERO) > 0) {
+                totalProfit = totalProfit.add(record.getProfit());
+            } else {
+                totalLoss = totalLoss.add(record.getProfit().abs());
+            }
+        }
+        assertEquals(totalProfit, taxProcessor.getTotalProfit());
+        assertEquals(totalLoss, taxProcessor.getTotalLoss());
+    }
+
+    @Test
+    void validityIndex() {
+        taxProcessor.setTaxRate(new BigDecimal("20"));
+        TransactionRecord record4 = taxProcessor.getTransactions().get(3);
+        List<TransactionRecord> invalid = taxProcessor.getInvalidTransactions();
+        assertTrue(invalid.isEmpty());
+
+        // views and counts follow setValid on the records
+        record4.setValid(false);
+        assertEquals(List.of(record4), invalid);
+        assertArrayEquals(new int[] {4, 3, 1}, taxProcessor.getRecordCounts());
+        assertTotalsMatchRecords();
+
+        taxProcessor.deleteRecord(1);
+        assertEquals(record4, taxProcessor.getInvalidTransactions().get(0));
+        taxProcessor.getTransactions().get(0).setValid(false);
+        assertEquals(List.of(taxProcessor.getTransactions().get(1)), taxProcessor.getValidTransactions());
+        assertArrayEquals(new int[] {3, 1, 2}, taxProcessor.getRecordCounts());
+        assertTotalsMatchRecords();
+
+        // a record that was replaced no longer changes the processor
+        TransactionRecord replaced = taxProcessor.getTransactions().get(1);
+        taxProcessor.updateRecord(1, new TransactionRecord(
+                "B006", "ITEM6", new BigDecimal("1"), new BigDecimal("0"),
+                new BigDecimal("2"), 1, BigDecimal.ZERO, 0));
+        replaced.setValid(false);
+        assertEquals(1, taxProcessor.getValidCount());
+        assertTotalsMatchRecords();
+    }
+
+    @Test
+    void validityViewsWalkInOrder() {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TransactionRecord record = new TransactionRecord(
+                    "B" + i, "ITEM" + i, BigDecimal.ONE, BigDecimal.ZERO,
+                    new BigDecimal(i), 1, new BigDecimal(i), 0);
+            record.setValid(i % 3 == 0);
+            records.add(record);
+        }
+        taxProcessor.setTransactions(records);
+
+        List<TransactionRecord> valid = taxProcessor.getValidTransactions();
+        List<TransactionRecord> invalid = taxProcessor.getInvalidTransactions();
+        assertEquals(34, valid.size());
+        assertEquals(66, invalid.size());
+        for (int i = 0; i < valid.size(); i++) {
+            assertEquals("B" + (i * 3), valid.get(i).getBillNumber());
+        }
+        assertEquals("B98", invalid.get(65).getBillNumber());
+        assertEquals("B1", invalid.get(0).getBillNumber());
+        assertThrows(IndexOutOfBoundsException.class, () -> valid.get(34));
+
+        int count = 0;
+        for (TransactionRecord record : invalid) {
+            assertFalse(record.isValid());
+            count++;
+        }
+        assertEquals(66, count);
+    }
+
+    @Test
+    void calculateFinalTaxParallel() {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            // mixed scales, profits and losses, some invalid
+            TransactionRecord record = new TransactionRecord(
+                    "B" + i, "ITEM" + i, BigDecimal.valueOf(i % 997, i % 4), BigDecimal.valueOf(i % 13, 1),
+                    BigDecimal.valueOf(i % 1009, i % 3), 1 + i % 5, BigDecimal.ZERO, 0);
+            record.setValid(i % 7 != 0);
+            records.add(record);
+        }
+        taxProcessor.setTransactions(records);
+        taxProcessor.setTaxRate(new BigDecimal("12.5"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BigDecimal expected = TaxProcessor.calculateFinalTax(records.stream(), taxProcessor.getTaxRate());
+            // equals also checks the scale
+            assertEquals(expected, taxProcessor.calculateFinalTaxParallel(pool));
+            assertEquals(expected, taxProcessor.calculateFinalTax());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void deleteWithTombstones() {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            TransactionRecord record = new TransactionRecord(
+                    "B" + i, "ITEM" + i, BigDecimal.valueOf(i % 10), BigDecimal.ZERO,
+                    BigDecimal.valueOf(5), 1, BigDecimal.ZERO, 0);
+            record.setValid(i % 4 != 0);
+            records.add(record);
+        }
+        taxProcessor.setTransactions(records);
+        taxProcessor.setTaxRate(new BigDecimal("10"));
+        List<TransactionRecord> expected = new ArrayList<>(records);
+
+        // deleting one by one from the front and the middle
+        for (int i = 0; i < 300; i++) {
+            int index = (i * 7) % expected.size();
+            taxProcessor.deleteRecord(index);
+            expected.remove(index);
+        }
+        assertEquals(expected, taxProcessor.getTransactions());
+        assertEquals(expected.size(), taxProcessor.size());
+        assertTotalsMatchRecords();
+
+        // indexes of updates skip the deleted records
+        taxProcessor.updateRecord(10, new TransactionRecord(
+                "B-NEW", "ITEM", BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.TEN, 1, BigDecimal.ZERO, 0));
+        assertEquals("B-NEW", taxProcessor.getTransactions().get(10).getBillNumber());
+        expected.set(10, taxProcessor.getTransactions().get(10));
+
+        int zeroProfit = (int) expected.stream().filter(r -> r.getProfit().signum() == 0).count();
+        assertEquals(zeroProfit, taxProcessor.deleteAll(r -> r.getProfit().signum() == 0));
+        expected.removeIf(r -> r.getProfit().signum() == 0);
+        assertEquals(expected, taxProcessor.getTransactions());
+        assertTotalsMatchRecords();
+        assertEquals(taxProcessor.calculateFinalTax(), taxProcessor.calculateFinalTaxParallel());
+
+        List<TransactionRecord> invalid = new ArrayList<>(taxProcessor.getInvalidTransactions());
+        taxProcessor.compact();
+        assertEquals(expected, taxProcessor.getTransactions());
+        assertEquals(invalid, taxProcessor.getInvalidTransactions());
+        assertTotalsMatchRecords();
+
+        // records keep reporting changes after compaction
+        taxProcessor.getTransactions().get(0).setValid(!expected.get(0).isValid());
+        assertTotalsMatchRecords();
+    }
+
+}
@@ -0,0 +1,179 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import javaApplication.TransactionExporter;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+class TransactionExporterTest {
+
+    private static final String HEADER =
+            "Bill Number,Item Code,Internal Price,Discount,Sale Price,Quantity,Line Total,Checksum\n";
+
+    @TempDir
+    Path tempDir;
+
+    // the text the exporter has always written: toString() of every field
+    private static String expectedCSV(List<TransactionRecord> records) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (TransactionRecord record : records) {
+            csv.append(record.getBillNumber()).append(",")
+                    .append(record.getItemCode()).append(",")
+                    .append(record.getInternalPrice()).append(",")
+                    .append(record.getDiscount()).append(",")
+                    .append(record.getSalePrice()).append(",")
+                    .append(record.getQuantity()).append(",")
+                    .append(record.getLineTotal()).append(",")
+                    .append(record.getOriginalChecksum()).append("\n");
+        }
+        return csv.toString();
+    }
+
+    private static BigDecimal randomDecimal(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                // scientific notation, positive or very negative exponent
+                return BigDecimal.valueOf(random.nextInt(100_000) - 50_000, random.nextInt(30) - 15);
+            case 1:
+                return BigDecimal.valueOf(random.nextLong(), random.nextInt(20));
+            case 2:
+                // doesn't fit a long
+                return new BigDecimal(BigInteger.valueOf(random.nextLong()).pow(2), random.nextInt(5));
+            case 3:
+                return BigDecimal.valueOf(0, random.nextInt(12) - 2);
+            default:
+                return BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(4));
+        }
+    }
+
+    private static List<TransactionRecord> randomRecords(int count) {
+        Random random = new Random(42);
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TransactionRecord record = new TransactionRecord(
+                    i % 50 == 0 ? "Bé" + i : "B" + i, "ITEM" + random.nextInt(100),
+                    randomDecimal(random), randomDecimal(random), randomDecimal(random),
+                    random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(10), BigDecimal.ZERO,
+                    random.nextInt(3) == 0 ? Integer.MIN_VALUE : random.nextInt(100));
+            record.setLineTotal(randomDecimal(random));
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void exportToCSV() throws IOException {
+        List<TransactionRecord> records = randomRecords(20_000);
+        Path file = tempDir.resolve("export.csv");
+
+        TransactionExporter.exportToCSV(records, file.toString());
+
+        assertArrayEquals(expectedCSV(records).getBytes(Charset.defaultCharset()), Files.readAllBytes(file));
+    }
+
+    @Test
+    void exportStream() throws IOException {
+        List<TransactionRecord> records = randomRecords(1000);
+        Path file = tempDir.resolve("export.csv");
+
+        TransactionExporter.exportToCSV(records.stream(), file.toString());
+
+        assertArrayEquals(expectedCSV(records).getBytes(Charset.defaultCharset()), Files.readAllBytes(file));
+    }
+
+    @Test
+    void exportStore() throws IOException {
+        List<TransactionRecord> records = randomRecords(5000);
+        Path file = tempDir.resolve("export.csv");
+        TransactionExporter.exportToCSV(records, file.toString());
+
+        TransactionStore store = TransactionImporter.importToStore(file.toString());
+        Path fromStore = tempDir.resolve("store.csv");
+        TransactionExporter.exportToCSV(store, fromStore.toString());
+
+        assertArrayEquals(expectedCSV(store.getTransactions()).getBytes(Charset.defaultCharset()),
+                Files.readAllBytes(fromStore));
+    }
+
+    @Test
+    void replacesExistingFile() throws IOException {
+        Path file = tempDir.resolve("export.csv");
+        Files.writeString(file, "x".repeat(100_000));
+
+        TransactionExporter.exportToCSV(new ArrayList<>(), file.toString());
+
+        assertEquals(HEADER, Files.readString(file));
+    }
+
+    @Test
+    void atomicExportKeepsPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        List<TransactionRecord> records = randomRecords(100);
+        Path file = tempDir.resolve("export.csv");
+        Files.writeString(file, "old");
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file, permissions);
+
+        TransactionExporter.exportToCSVAtomically(records, file.toString());
+
+        assertEquals(expectedCSV(records), Files.readString(file, Charset.defaultCharset()));
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+
+        // a new file gets the same permissions as from a plain export
+        Path plain = tempDir.resolve("plain.csv");
+        Path atomic = tempDir.resolve("atomic.csv");
+        TransactionExporter.exportToCSV(records, plain.toString());
+        TransactionExporter.exportToCSVAtomically(records, atomic.toString());
+        assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(atomic));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    void exportToCSVParallel() throws IOException {
+        List<TransactionRecord> records = randomRecords(10_007);
+        Path file = tempDir.resolve("export.csv");
+        Path parallelFile = tempDir.resolve("parallel.csv");
+        TransactionExporter.exportToCSV(records, file.toString());
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            // slices that don't divide the list, several rounds
+            TransactionExporter.exportToCSVParallel(records, parallelFile.toString(), pool, 97);
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(parallelFile));
+
+            TransactionExporter.exportToCSVParallel(records, parallelFile.toString(), pool);
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(parallelFile));
+
+            TransactionExporter.exportToCSVParallel(new ArrayList<>(), parallelFile.toString(), pool, 97);
+            assertEquals(HEADER, Files.readString(parallelFile));
+
+            // the original exception of the failing record
+            records.get(5000).setBillNumber(null);
+            assertThrows(NullPointerException.class,
+                    () -> TransactionExporter.exportToCSVParallel(records, parallelFile.toString(), pool, 97));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
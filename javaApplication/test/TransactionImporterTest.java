@@ -1,15 +1,26 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionExporter;
 import javaApplication.TransactionImporter;
 import javaApplication.TransactionRecord;
+import javaApplication.TransactionValidator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class TransactionImporterTest {
 
@@ -45,4 +56,175 @@ class TransactionImporterTest {
 
         assertEquals(counts[0], counts[1] + counts[2]);
     }
-}
\ No newline at end of file
+
+    @Test
+    void importFromCSVParallel() throws IOException {
+        File csvFile = tempDir.resolve("test_transactions_parallel.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\r\n");
+            for (int i = 0; i < 200; i++) {
+                writer.write("B" + i + ",ITEM" + (i % 7) + ",100.5,10,150," + (i % 5 + 1) + ",290,20\r\n");
+                writer.write("B" + i + ",ITEM@" + i + ",75,0,75,1,75,40\n");
+                writer.write("\n"); // empty line
+                writer.write("B" + i + ",short,line\r");
+            }
+            writer.write("B999,ITEM999,50,5,-70,3,-215,42"); // no line break at the end
+        }
+
+        List<TransactionRecord> expected = TransactionImporter.importFromCSV(csvFile.getAbsolutePath());
+        // tiny chunks so that the file is split into many parts
+        List<TransactionRecord> actual = TransactionImporter.importFromCSVParallel(
+                csvFile.getAbsolutePath(), ForkJoinPool.commonPool(), 100);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    void streamFromCSV() throws IOException {
+        File csvFile = tempDir.resolve("test_transactions_stream.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            writer.write("B001,ITEM123,100,10,150,2,290,50\n");
+            writer.write("B002,ITEM456,75,0,75,1,75,40\n");
+            writer.write("B003,ITEM@789,200,20,150,1,130,45\n");
+            writer.write("B004,ITEM123,50,5,-70,3,-215,42\n");
+        }
+
+        List<TransactionRecord> expected = TransactionImporter.importFromCSV(csvFile.getAbsolutePath());
+
+        try (Stream<TransactionRecord> stream = TransactionImporter.streamFromCSV(csvFile.getAbsolutePath())) {
+            List<String> streamed = stream.map(TransactionRecord::toString).collect(Collectors.toList());
+            assertEquals(expected.stream().map(TransactionRecord::toString).collect(Collectors.toList()), streamed);
+        }
+
+        // tax over the stream matches the tax over the imported list
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(expected);
+        processor.setTaxRate(new BigDecimal("15"));
+        try (Stream<TransactionRecord> stream = TransactionImporter.streamFromCSV(csvFile.getAbsolutePath())) {
+            assertEquals(processor.calculateFinalTax(), TaxProcessor.calculateFinalTax(stream, new BigDecimal("15")));
+        }
+    }
+
+    @Test
+    void importFromCSV_sourceLineChecksum() throws IOException {
+        File csvFile = tempDir.resolve("test_transactions_source.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            // line total in the file is wrong (should be 280), checksum was calculated on the file line
+            writer.write("B001,ITEM123,100,10,150,2,1000,24\n");
+        }
+
+        List<TransactionRecord> reconstructed = TransactionImporter.importFromCSV(csvFile.getAbsolutePath());
+        List<TransactionRecord> source = TransactionImporter.importFromCSV(
+                csvFile.getAbsolutePath(), TransactionValidator.ChecksumMode.SOURCE_LINE);
+
+        assertFalse(reconstructed.get(0).isValid());
+        assertTrue(source.get(0).isValid());
+    }
+
+    @Test
+    void importSnapshot() throws IOException {
+        File csvFile = tempDir.resolve("test_transactions_snapshot.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            writer.write("B001,ITEM123,100,10,150,2,290,50\n");
+            writer.write("B002,ITEM456,75.50,0,75.5,1,75.5,40\n");
+            writer.write("B003,ITEM@789,200,20,150,1,130,45\n");
+            writer.write("B001,ITEM123,1E+3,0.0000001,123456789012345678901234567890,3,0,42\n");
+            writer.write("B004,ZERO,5,0,5,1,5,42\n");
+        }
+
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSV(csvFile.getAbsolutePath()));
+        processor.setTaxRate(new BigDecimal("12.5"));
+        processor.getTransactions().get(1).setValid(false);
+        processor.getTransactions().get(0).setProfit(new BigDecimal("1.230"));
+        processor.deleteRecord(4);
+
+        File snapshot = tempDir.resolve("test_transactions.snapshot").toFile();
+        TransactionExporter.exportSnapshot(processor, snapshot.getAbsolutePath());
+        TaxProcessor loaded = TransactionImporter.importSnapshot(snapshot.getAbsolutePath());
+
+        assertEquals(processor.size(), loaded.size());
+        for (int i = 0; i < processor.size(); i++) {
+            TransactionRecord expected = processor.getTransactions().get(i);
+            TransactionRecord actual = loaded.getTransactions().get(i);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected.getOriginalChecksum(), actual.getOriginalChecksum());
+            assertEquals(expected.getProfit(), actual.getProfit());
+        }
+        assertEquals(new BigDecimal("12.5"), loaded.getTaxRate());
+        assertArrayEquals(processor.getRecordCounts(), loaded.getRecordCounts());
+        assertEquals(processor.calculateFinalTax(), loaded.calculateFinalTax());
+
+        // empty processor
+        TransactionExporter.exportSnapshot(new TaxProcessor(), snapshot.getAbsolutePath());
+        assertEquals(0, TransactionImporter.importSnapshot(snapshot.getAbsolutePath()).size());
+    }
+
+    @Test
+    void importSnapshot_corrupt() throws IOException {
+        List<TransactionRecord> records = new ArrayList<>();
+        records.add(new TransactionRecord("B001", "ITEM123", new BigDecimal("100"), new BigDecimal("10"),
+                new BigDecimal("150"), 2, new BigDecimal("280"), 24));
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(records);
+
+        Path snapshot = tempDir.resolve("test_transactions_corrupt.snapshot");
+        TransactionExporter.exportSnapshot(processor, snapshot.toString());
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(snapshot, bytes);
+        assertThrows(IOException.class, () -> TransactionImporter.importSnapshot(snapshot.toString()));
+
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> TransactionImporter.importSnapshot(snapshot.toString()));
+
+        // a CSV file is not a snapshot
+        Files.write(snapshot, "Bill Number,Item Code,Internal Price,Discount\n".getBytes());
+        assertThrows(IOException.class, () -> TransactionImporter.importSnapshot(snapshot.toString()));
+    }
+
+    @Test
+    void forEachRecord_progress() throws IOException {
+        File csvFile = tempDir.resolve("test_transactions_progress.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            for (int i = 0; i < 2500; i++) {
+                writer.write("B" + i + ",ITEM123,100,10,150,2,290,50\n");
+            }
+        }
+
+        List<long[]> reports = new ArrayList<>();
+        List<TransactionRecord> records = new ArrayList<>();
+        TransactionImporter.forEachRecord(csvFile.getAbsolutePath(), TransactionValidator.ChecksumMode.RECONSTRUCTED_LINE,
+                records::add, (bytesRead, count) -> {
+                    reports.add(new long[] {bytesRead, count});
+                    return true;
+                });
+
+        assertEquals(2500, records.size());
+        assertEquals(3, reports.size());
+        assertEquals(1000, reports.get(0)[1]);
+        assertEquals(2000, reports.get(1)[1]);
+        assertTrue(reports.get(0)[0] < reports.get(1)[0]);
+        // the last report is the whole file
+        assertArrayEquals(new long[] {csvFile.length(), 2500}, reports.get(2));
+
+        // stopped by the listener
+        List<TransactionRecord> stopped = new ArrayList<>();
+        assertThrows(CancellationException.class, () -> TransactionImporter.forEachRecord(csvFile.getAbsolutePath(),
+                TransactionValidator.ChecksumMode.RECONSTRUCTED_LINE, stopped::add, (bytesRead, count) -> false));
+        assertEquals(1000, stopped.size());
+    }
+}
@@ -0,0 +1,72 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.TransactionLineTokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class TransactionLineTokenizerTest {
+
+    private final TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(StandardCharsets.UTF_8);
+
+    private boolean tokenize(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return tokenizer.tokenize(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    void tokenize() {
+        assertTrue(tokenize("B001,ITEM123,100,10,150,2,290,50"));
+        assertEquals("B001", tokenizer.stringField(0));
+        assertEquals("ITEM123", tokenizer.stringField(1));
+        assertEquals(new BigDecimal("100"), tokenizer.decimalField(2));
+        assertEquals(2, tokenizer.intField(5));
+        assertEquals(50, tokenizer.intField(7));
+
+        // field count works like line.split(",")
+        assertFalse(tokenize("B001,ITEM123,100,10,150,2,290"));
+        assertFalse(tokenize("B001,ITEM123,100,10,150,2,290,,,"));
+        assertTrue(tokenize("B001,ITEM123,100,10,150,2,290,,,x"));
+        assertTrue(tokenize(",,,,,,,5"));
+        assertFalse(tokenize(""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"100", "0", "-0", "+5", "007.50", "5.", ".5", "-0.00", "0.0000001",
+            "123456789012345678", "1234567890123456789", "12345678901234567890.5", "1e3", ".", "-", "", "1.2.3", "abc"})
+    void decimalField(String value) {
+        assertTrue(tokenize("B,I," + value + ",0,0,1,0,0"));
+
+        BigDecimal expected;
+        try {
+            expected = new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            assertThrows(NumberFormatException.class, () -> tokenizer.decimalField(2));
+            return;
+        }
+        // equals also compares the scale
+        assertEquals(expected, tokenizer.decimalField(2));
+        if (tokenizer.isFixedPoint(2)) {
+            assertEquals(expected, BigDecimal.valueOf(tokenizer.unscaledValue(2), tokenizer.scale(2)));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-0", "+7", "0042", "2147483647", "-2147483648", "2147483648", "99999999999", "", "-", "1.0"})
+    void intField(String value) {
+        assertTrue(tokenize("B,I,0,0,0," + value + ",0,0"));
+
+        int expected;
+        try {
+            expected = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            assertThrows(NumberFormatException.class, () -> tokenizer.intField(5));
+            return;
+        }
+        assertEquals(expected, tokenizer.intField(5));
+    }
+}
@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionObservableList;
+import javaApplication.TransactionRecord;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+class TransactionObservableListTest {
+
+    private final List<String> changes = new ArrayList<>();
+
+    private final ListChangeListener<TransactionRecord> recorder = change -> {
+        StringBuilder text = new StringBuilder();
+        while (change.next()) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            if (change.wasReplaced()) {
+                text.append("set ").append(change.getFrom());
+            } else if (change.wasUpdated()) {
+                text.append("update ").append(change.getFrom());
+            } else if (change.wasRemoved()) {
+                text.append("remove ").append(change.getFrom()).append(':').append(change.getRemovedSize());
+            } else if (change.wasAdded()) {
+                text.append("add ").append(change.getFrom()).append(':').append(change.getAddedSize());
+            }
+        }
+        changes.add(text.toString());
+    };
+
+    private static TransactionRecord record(String billNumber, String salePrice) {
+        return new TransactionRecord(billNumber, "ITEM1", new BigDecimal("10"), BigDecimal.ZERO,
+                new BigDecimal(salePrice), 1, new BigDecimal(salePrice), 0);
+    }
+
+    private static TaxProcessor processor(int count) {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // every third record has zero profit
+            records.add(record("B" + i, i % 3 == 0 ? "10" : "15"));
+        }
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(records);
+        return processor;
+    }
+
+    private static void assertSameRecords(TaxProcessor processor, List<TransactionRecord> list) {
+        assertEquals(processor.size(), list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertSame(processor.getTransactions().get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void viewsProcessorRecords() {
+        TaxProcessor processor = processor(10);
+        TransactionObservableList list = new TransactionObservableList(processor);
+        assertSameRecords(processor, list);
+        assertThrows(UnsupportedOperationException.class, () -> list.add(record("B99", "15")));
+        assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+    }
+
+    @Test
+    void singleRowEvents() {
+        TaxProcessor processor = processor(10);
+        TransactionObservableList list = new TransactionObservableList(processor);
+        list.addListener(recorder);
+
+        processor.updateRecord(4, record("B4", "20"));
+        assertEquals(List.of("set 4"), changes);
+
+        changes.clear();
+        processor.getTransactions().get(2).setValid(false);
+        assertEquals(List.of("update 2"), changes);
+
+        changes.clear();
+        processor.deleteRecord(7);
+        assertEquals(List.of("remove 7:1"), changes);
+        assertSameRecords(processor, list);
+
+        // positions after a delete are the list's positions
+        changes.clear();
+        processor.getTransactions().get(8).setValid(false);
+        assertEquals(List.of("update 8"), changes);
+
+        // dropping the deleted slots changes nothing visible
+        changes.clear();
+        processor.compact();
+        assertEquals(List.of(), changes);
+        assertSameRecords(processor, list);
+    }
+
+    @Test
+    void bulkDeleteIsOneChange() {
+        TaxProcessor processor = processor(10);
+        TransactionObservableList list = new TransactionObservableList(processor);
+        List<TransactionRecord> before = new ArrayList<>(list);
+        list.addListener(recorder);
+
+        List<TransactionRecord> removed = new ArrayList<>();
+        list.addListener((ListChangeListener<TransactionRecord>) change -> {
+            while (change.next()) {
+                removed.addAll(change.getRemoved());
+            }
+        });
+        processor.deleteZeroProfitRecords();
+
+        assertEquals(1, changes.size());
+        assertEquals("remove 0:1 remove 2:1 remove 4:1 remove 6:1", changes.get(0));
+        assertEquals(List.of(before.get(0), before.get(3), before.get(6), before.get(9)), removed);
+        assertSameRecords(processor, list);
+    }
+
+    @Test
+    void replacedRecords() {
+        TaxProcessor processor = processor(5);
+        processor.deleteRecord(1);
+        TransactionObservableList list = new TransactionObservableList(processor);
+        list.addListener(recorder);
+
+        int[] sizes = new int[2];
+        list.addListener((ListChangeListener<TransactionRecord>) change -> {
+            while (change.next()) {
+                sizes[0] += change.getRemovedSize();
+                sizes[1] += change.getAddedSize();
+            }
+        });
+        processor.setTransactions(processor(3).getTransactions());
+        assertEquals(1, changes.size());
+        assertArrayEquals(new int[] {4, 3}, sizes);
+        assertSameRecords(processor, list);
+
+        list.dispose();
+        changes.clear();
+        processor.deleteRecord(0);
+        assertEquals(List.of(), changes);
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import javaApplication.TaxProcessor;
+import javaApplication.TransactionExporter;
+import javaApplication.TransactionImporter;
+import javaApplication.TransactionRecord;
+import javaApplication.TransactionStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class TransactionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File csvFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = tempDir.resolve("test_transactions_store.csv").toFile();
+
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("BillNumber,ItemCode,InternalPrice,Discount,SalePrice,Quantity,LineTotal,Checksum\n");
+            writer.write("B001,ITEM123,100,10,150,2,280,23\n"); // valid, profit
+            writer.write("B002,ITEM456,75,0,75,1,75,17\n"); // valid, zero profit
+            writer.write("B003,ITEM789,200.125,20.5,150,1,129.5,29\n"); // valid, loss
+            writer.write("B004,ITEM@456,50,5,70,3,195,21\n"); // invalid item code
+            writer.write("B005,ITEM123,50,5,-70,3,-225,24\n"); // negative sale price
+            writer.write("B001,ITEM999,1.5,0.25,3,4,5.00,999\n"); // wrong checksum
+            writer.write("B006,ITEM1,99999999999999999999,0,1,1,1,0\n"); // doesn't fit a long
+        }
+    }
+
+    private static void assertSameRecords(List<TransactionRecord> expected, List<TransactionRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    void importToStore() throws IOException {
+        List<TransactionRecord> records = TransactionImporter.importFromCSV(csvFile.getAbsolutePath());
+        TransactionStore store = TransactionImporter.importToStore(csvFile.getAbsolutePath());
+
+        assertSameRecords(records, store.getTransactions());
+        assertEquals(TransactionImporter.getRecordCounts(records)[1], store.getValidCount());
+    }
+
+    @Test
+    void calculateFinalTax() throws IOException {
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSV(csvFile.getAbsolutePath()));
+        processor.setTaxRate(new BigDecimal("12.5"));
+        TransactionStore store = TransactionImporter.importToStore(csvFile.getAbsolutePath());
+        store.setTaxRate(new BigDecimal("12.5"));
+
+        // equals also checks the scale
+        assertEquals(processor.calculateFinalTax(), store.calculateFinalTax());
+    }
+
+    @Test
+    void updateAndDelete() throws IOException {
+        TaxProcessor processor = new TaxProcessor();
+        processor.setTransactions(TransactionImporter.importFromCSV(csvFile.getAbsolutePath()));
+        TransactionStore store = TransactionImporter.importToStore(csvFile.getAbsolutePath());
+
+        TransactionRecord edit = new TransactionRecord("B001", "ITEM77", new BigDecimal("10"),
+                new BigDecimal("1"), new BigDecimal("12"), 5, BigDecimal.ZERO, 0);
+        processor.updateRecord(3, edit);
+        store.updateRecord(3, new TransactionRecord("B001", "ITEM77", new BigDecimal("10"),
+                new BigDecimal("1"), new BigDecimal("12"), 5, BigDecimal.ZERO, 0));
+        assertSameRecords(processor.getTransactions(), store.getTransactions());
+
+        processor.deleteRecord(0);
+        store.deleteRecord(0);
+        assertSameRecords(processor.getTransactions(), store.getTransactions());
+
+        processor.deleteZeroProfitRecords();
+        store.deleteZeroProfitRecords();
+        assertSameRecords(processor.getTransactions(), store.getTransactions());
+        assertSameRecords(processor.getInvalidTransactions(), store.getInvalidTransactions());
+    }
+
+    @Test
+    void exportToCSV() throws IOException {
+        File fromRecords = tempDir.resolve("records.csv").toFile();
+        File fromStore = tempDir.resolve("store.csv").toFile();
+
+        TransactionExporter.exportToCSV(TransactionImporter.importFromCSV(csvFile.getAbsolutePath()),
+                fromRecords.getAbsolutePath());
+        TransactionExporter.exportToCSV(TransactionImporter.importToStore(csvFile.getAbsolutePath()),
+                fromStore.getAbsolutePath());
+
+        assertArrayEquals(Files.readAllBytes(fromRecords.toPath()), Files.readAllBytes(fromStore.toPath()));
+    }
+}
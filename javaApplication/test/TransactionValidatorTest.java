@@ -87,6 +87,20 @@ class TransactionValidatorTest {
         assertEquals(23, TransactionValidator.calculateChecksum(transactionLine));
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-0", "7", "100", "0.5", "-12.34", "0.000001", "0.0000001", "0E-9",
+            "1E+3", "12.3E+7", "1.50E-10", "123456789012345678901234567890.123"})
+    void calculateChecksum_record(String price) {
+        // the record based checksum has to count exactly what the rebuilt line contains
+        TransactionRecord record = new TransactionRecord(
+                "Bé_01", "ITEM123", new BigDecimal(price),
+                new BigDecimal("0.25"), new BigDecimal(price), -3,
+                new BigDecimal(price), 0);
+
+        assertEquals(TransactionValidator.calculateChecksum(record.toTransactionLine()),
+                TransactionValidator.calculateChecksum(record));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"ITEM123", "item456", "Item_789", "A1B2C3"})
     void isValidItemCode_valid(String itemCode) {